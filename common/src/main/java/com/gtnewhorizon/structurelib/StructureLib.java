@@ -24,7 +24,6 @@ import com.gtnewhorizon.structurelib.util.XSTR;
 public class StructureLib {
 
     private static final String STRUCTURECOMPAT_MODID = "structurecompat";
-    public static boolean DEBUG_MODE;
     public static boolean PANIC_MODE = Boolean.getBoolean("structurelib.panic");
     public static final Logger LOGGER = LogManager.getLogger("StructureLib");
 
@@ -46,7 +45,7 @@ public class StructureLib {
         CHANNEL.registerPacket(NetworkDirection.CLIENT_TO_SERVER, SET_CHANNEL_DATA, SetChannelDataMessage.HANDLER, SetChannelDataMessage.class);
 
         try {
-            DEBUG_MODE = Boolean.parseBoolean(System.getProperty("structurelib.debug"));
+            StructureLibAPI.setDebugEnabled(Boolean.parseBoolean(System.getProperty("structurelib.debug")));
         } catch (IllegalArgumentException | NullPointerException e) {
             // turn on debug by default in dev mode
             // this will be overridden if above property is present and set to false
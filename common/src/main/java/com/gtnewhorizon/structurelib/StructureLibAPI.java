@@ -5,7 +5,9 @@ import com.gtnewhorizon.structurelib.alignment.IAlignmentProvider;
 import com.gtnewhorizon.structurelib.alignment.enumerable.ExtendedFacing;
 import com.gtnewhorizon.structurelib.net.AlignmentMessage;
 import com.gtnewhorizon.structurelib.structure.AutoPlaceEnvironment;
+import com.gtnewhorizon.structurelib.structure.CheckRequest;
 import com.gtnewhorizon.structurelib.structure.IStructureDefinition;
+import com.gtnewhorizon.structurelib.structure.ParallelStructureCheck;
 import com.gtnewhorizon.structurelib.util.PlatformUtils;
 import net.minecraft.client.renderer.texture.TextureAtlasSprite;
 import net.minecraft.core.BlockPos;
@@ -20,6 +22,8 @@ import net.minecraft.world.level.block.Block;
 import net.minecraft.world.level.block.state.BlockState;
 import net.minecraft.world.phys.AABB;
 
+import java.util.Collection;
+
 import static com.gtnewhorizon.structurelib.StructureLib.proxy;
 
 /**
@@ -30,6 +34,11 @@ public class StructureLibAPI {
 
     public static final String MOD_ID = "structurelib";
     static final ThreadLocal<Object> instrument = new ThreadLocal<>();
+    /**
+     * Kept here rather than in {@link StructureLib}, so that checking it from structure code does not initialize the
+     * mod class and with it the network channel.
+     */
+    private static boolean debug;
 
     /**
      * Start instrumenting <b>for the current thread only</b>. When instrumentation is enabled,
@@ -243,17 +252,29 @@ public class StructureLibAPI {
         StructureLib.CHANNEL.sendToPlayersInLevel(new AlignmentMessage.AlignmentData(provider), dimension);
     }
 
+    /**
+     * Run many structure checks at once, evaluating them in parallel where possible. Must be called on the server
+     * thread.
+     *
+     * @param requests checks to run
+     * @return result of each check, in iteration order of requests
+     * @see ParallelStructureCheck
+     */
+    public static boolean[] checkAll(Collection<? extends CheckRequest<?>> requests) {
+        return ParallelStructureCheck.checkAll(requests);
+    }
+
     /**
      * Check if structure debug mode is on.
      *
      * @return true if debug mode is on
      */
     public static boolean isDebugEnabled() {
-        return StructureLib.DEBUG_MODE;
+        return debug;
     }
 
     public static void setDebugEnabled(boolean enabled) {
-        StructureLib.DEBUG_MODE = enabled;
+        debug = enabled;
     }
 
     /**
@@ -40,27 +40,45 @@ public class StructureLibConfig {
     }
 
     public static class Common {
-        public int AUTO_PLACE_BUDGET, AUTO_PLACE_INTERVAL;
+        public int AUTO_PLACE_BUDGET, AUTO_PLACE_INTERVAL, AUTO_PLACE_TICK_BUDGET, CHECK_BUDGET, CHECK_CACHE_SIZE;
     }
 
 
     public static class CommonConfig {
 
-        public final ForgeConfigSpec.IntValue AUTO_PLACE_BUDGET, AUTO_PLACE_INTERVAL;
+        public final ForgeConfigSpec.IntValue AUTO_PLACE_BUDGET, AUTO_PLACE_INTERVAL, AUTO_PLACE_TICK_BUDGET, CHECK_BUDGET,
+                CHECK_CACHE_SIZE;
 
         public CommonConfig(ForgeConfigSpec.Builder builder) {
             builder.push("hologram");
-            AUTO_PLACE_BUDGET = builder.comment("Max number of elements can be placed in one round of auto place.",
+            AUTO_PLACE_BUDGET = builder.comment("Max number of elements can be placed for one player in one server tick of auto place.",
                 "As expected, server side settings will overrides client settings.",
                 "Certain larger multi might increase these values beyond this configured value.")
                 .translation("structurelib.config.auto_place_budget")
                 .defineInRange("AUTO_PLACE_BUDGET", 25, 1, 200);
-            AUTO_PLACE_INTERVAL = builder.comment("Unit: millisecond. Minimal interval between two auto place round.",
+            AUTO_PLACE_INTERVAL = builder.comment("Unit: millisecond. Minimal interval between two uses of the trigger that start or cancel auto place.",
                 "As expected, server side settings will overrides client settings.",
                 "Note this relates to the wall clock, not in game ticks.",
                 "Value smaller than default is likely to be perceived as no minimal interval whatsoever.")
                 .translation("structurelib.config.auto_place_interval")
                 .defineInRange("AUTO_PLACE_INTERVAL", 300, 0, 20000);
+            AUTO_PLACE_TICK_BUDGET = builder.comment("Unit: nanosecond. Time survival auto place may spend each server tick, shared by all players.",
+                "At least one player's auto place is run each tick regardless of this value.")
+                .translation("structurelib.config.auto_place_tick_budget")
+                .defineInRange("AUTO_PLACE_TICK_BUDGET", 2000000, 0, 50000000);
+            builder.pop();
+            builder.push("scheduler");
+            CHECK_BUDGET = builder.comment("Unit: nanosecond. Time the structure check scheduler may spend each server tick.",
+                "At least one scheduled check is run each tick regardless of this value.",
+                "Only affects structures that opted into the scheduler.")
+                .translation("structurelib.config.check_budget")
+                .defineInRange("CHECK_BUDGET", 2000000, 0, 50000000);
+            builder.pop();
+            builder.push("cache");
+            CHECK_CACHE_SIZE = builder.comment("Max number of structure check results remembered per world.",
+                "0 disables the cache. Only affects structures that opted into the cache.")
+                .translation("structurelib.config.check_cache_size")
+                .defineInRange("CHECK_CACHE_SIZE", 4096, 0, 65536);
             builder.pop();
         }
 
@@ -92,6 +110,9 @@ public class StructureLibConfig {
     private static void bakeCommonConfig() {
         COMMON.AUTO_PLACE_BUDGET = COMMON_CONFIG.AUTO_PLACE_BUDGET.get();
         COMMON.AUTO_PLACE_INTERVAL = COMMON_CONFIG.AUTO_PLACE_INTERVAL.get();
+        COMMON.AUTO_PLACE_TICK_BUDGET = COMMON_CONFIG.AUTO_PLACE_TICK_BUDGET.get();
+        COMMON.CHECK_BUDGET = COMMON_CONFIG.CHECK_BUDGET.get();
+        COMMON.CHECK_CACHE_SIZE = COMMON_CONFIG.CHECK_CACHE_SIZE.get();
     }
 
     private static void bakeClientConfig() {
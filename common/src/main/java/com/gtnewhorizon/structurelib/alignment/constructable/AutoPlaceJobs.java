@@ -0,0 +1,194 @@
+package com.gtnewhorizon.structurelib.alignment.constructable;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.gtnewhorizon.structurelib.StructureLib;
+import com.gtnewhorizon.structurelib.StructureLibAPI;
+import com.gtnewhorizon.structurelib.StructureLibConfig;
+import com.gtnewhorizon.structurelib.structure.IItemSource;
+import com.gtnewhorizon.structurelib.structure.ISurvivalBuildEnvironment;
+import com.gtnewhorizon.structurelib.util.InventoryUtility;
+import com.gtnewhorizon.structurelib.util.PlayerInventoryIndex;
+import net.minecraft.network.chat.TranslatableComponent;
+import net.minecraft.server.level.ServerPlayer;
+import net.minecraft.world.item.ItemStack;
+import net.minecraft.world.level.Level;
+import net.minecraft.world.level.LevelAccessor;
+import net.minecraft.world.level.block.entity.BlockEntity;
+
+/**
+ * Runs survival autoplace in the background.
+ * <p>
+ * Instead of placing one bounded burst per use of the trigger, a use starts a job that places up to
+ * {@link StructureLibConfig.Common#AUTO_PLACE_BUDGET} elements each server tick until the structure is complete, the
+ * player runs out of items, or the job is cancelled. Each player can have one job at a time. Using the trigger again
+ * on the same controller cancels the job, using it on another controller replaces it.
+ * <p>
+ * All jobs share {@link StructureLibConfig.Common#AUTO_PLACE_TICK_BUDGET} per tick. Jobs take turns, so that a tick
+ * running out of time delays the jobs of other players instead of the same ones over and over.
+ * <p>
+ * All methods of this class must be called on the server thread.
+ */
+public final class AutoPlaceJobs {
+
+    private static final short PROGRESS_INTERVAL = 1000;
+    private static final Object PROGRESS_THROTTLE_KEY = new Object();
+    /**
+     * In turn order, i.e. jobs that waited the longest first.
+     */
+    private static final Map<ServerPlayer, Job> JOBS = new LinkedHashMap<>();
+
+    private AutoPlaceJobs() {}
+
+    private static final class Job {
+
+        private final ServerPlayer player;
+        private final Level world;
+        private final BlockEntity controller;
+        private final ISurvivalConstructable constructable;
+        private final ItemStack trigger;
+        private int built;
+
+        private Job(ServerPlayer player, Level world, BlockEntity controller, ISurvivalConstructable constructable,
+                ItemStack trigger) {
+            this.player = player;
+            this.world = world;
+            this.controller = controller;
+            this.constructable = constructable;
+            this.trigger = trigger;
+        }
+
+        private boolean isStale() {
+            return player.hasDisconnected() || player.isRemoved()
+                    || player.level != world
+                    || controller.isRemoved();
+        }
+
+        /**
+         * @return true if this job is done
+         */
+        private boolean step() {
+            int result;
+            PlayerInventoryIndex inventory = InventoryUtility.indexPlayerInventory(player);
+            StructureLibAPI.startHinting(world);
+            try {
+                result = constructable.survivalConstruct(
+                        trigger,
+                        StructureLibConfig.COMMON.AUTO_PLACE_BUDGET,
+                        ISurvivalBuildEnvironment.create(IItemSource.fromPlayer(player, inventory), player));
+            } finally {
+                inventory.commit();
+                StructureLibAPI.endHinting(world);
+            }
+            if (result == -1) {
+                if (built > 0) player.sendMessage(
+                        new TranslatableComponent("structurelib.autoplace.built_stat", built),
+                        player.getUUID());
+                player.sendMessage(new TranslatableComponent("structurelib.autoplace.complete"), player.getUUID());
+                return true;
+            }
+            if (result <= 0) {
+                // nothing could be placed, e.g. out of items, which the walker already told the player about
+                player.sendMessage(
+                        new TranslatableComponent("structurelib.autoplace.stopped", built),
+                        player.getUUID());
+                return true;
+            }
+            built += result;
+            StructureLibAPI.addThrottledChat(
+                    PROGRESS_THROTTLE_KEY,
+                    player,
+                    new TranslatableComponent("structurelib.autoplace.built_stat", built),
+                    PROGRESS_INTERVAL);
+            return false;
+        }
+    }
+
+    /**
+     * Start a job for given player, or cancel it if the player already has one on the same controller. Any other job
+     * of the player is replaced.
+     *
+     * @param player        the player. items are drained from this player.
+     * @param controller    the block entity the trigger was used on. the job is dropped once it is removed.
+     * @param constructable the constructable of the controller
+     * @param trigger       the trigger item. will be copied.
+     */
+    public static void toggle(ServerPlayer player, BlockEntity controller, ISurvivalConstructable constructable,
+            ItemStack trigger) {
+        if (player == null || controller == null || constructable == null) throw new IllegalArgumentException();
+        Job old = JOBS.remove(player);
+        if (old != null && old.controller == controller) {
+            player.sendMessage(new TranslatableComponent("structurelib.autoplace.cancelled", old.built), player.getUUID());
+            return;
+        }
+        JOBS.put(player, new Job(player, player.level, controller, constructable, trigger.copy()));
+        player.sendMessage(new TranslatableComponent("structurelib.autoplace.started"), player.getUUID());
+    }
+
+    /**
+     * Cancel the job of given player, if any.
+     *
+     * @return true if there was a job
+     */
+    public static boolean cancel(ServerPlayer player) {
+        Job job = JOBS.remove(player);
+        if (job == null) return false;
+        player.sendMessage(new TranslatableComponent("structurelib.autoplace.cancelled", job.built), player.getUUID());
+        return true;
+    }
+
+    public static boolean isRunning(ServerPlayer player) {
+        return JOBS.containsKey(player);
+    }
+
+    // region platform hooks
+
+    /**
+     * Called by platform code at the end of each server tick. Not a stable API.
+     */
+    public static void onServerTick() {
+        if (JOBS.isEmpty()) return;
+        long budget = StructureLibConfig.COMMON.AUTO_PLACE_TICK_BUDGET;
+        long start = System.nanoTime();
+        // jobs started or cancelled by steps are picked up next tick
+        List<Job> jobs = new ArrayList<>(JOBS.values());
+        List<Job> stepped = new ArrayList<>();
+        // always run at least one, so that a tiny budget cannot starve the queue
+        for (Iterator<Job> iterator = jobs.iterator(); iterator.hasNext()
+                && (stepped.isEmpty() || System.nanoTime() - start < budget);) {
+            Job job = iterator.next();
+            if (JOBS.get(job.player) != job) continue;
+            if (job.isStale()) {
+                JOBS.remove(job.player);
+                continue;
+            }
+            stepped.add(job);
+            boolean done;
+            try {
+                done = job.step();
+            } catch (RuntimeException e) {
+                StructureLib.LOGGER.error("Autoplace of {} for {} failed", job.controller, job.player, e);
+                done = true;
+            }
+            if (done) JOBS.remove(job.player, job);
+        }
+        // move to the back of the line
+        for (Job job : stepped) {
+            if (JOBS.remove(job.player, job)) JOBS.put(job.player, job);
+        }
+    }
+
+    /**
+     * Called by platform code whenever a world unloaded. Not a stable API.
+     */
+    public static void onLevelUnload(LevelAccessor world) {
+        if (JOBS.isEmpty()) return;
+        JOBS.values().removeIf(job -> job.world == world);
+    }
+
+    // endregion
+}
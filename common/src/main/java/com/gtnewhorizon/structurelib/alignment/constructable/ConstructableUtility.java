@@ -18,8 +18,6 @@ import com.gtnewhorizon.structurelib.StructureLib;
 import com.gtnewhorizon.structurelib.StructureLibAPI;
 import com.gtnewhorizon.structurelib.alignment.IAlignment;
 import com.gtnewhorizon.structurelib.alignment.enumerable.ExtendedFacing;
-import com.gtnewhorizon.structurelib.structure.IItemSource;
-import com.gtnewhorizon.structurelib.structure.ISurvivalBuildEnvironment;
 
 public class ConstructableUtility {
 
@@ -79,15 +77,7 @@ public class ConstructableUtility {
             if (aPlayer.isCreative()) {
                 constructable.construct(aStack, false);
             } else if (constructable instanceof ISurvivalConstructable) {
-                int built = ((ISurvivalConstructable) constructable).survivalConstruct(
-                        aStack,
-                    StructureLibConfig.COMMON.AUTO_PLACE_BUDGET,
-                        ISurvivalBuildEnvironment.create(IItemSource.fromPlayer(playerMP), playerMP));
-                if (built > 0) {
-                    playerMP.sendMessage(new TranslatableComponent("structurelib.autoplace.built_stat", built), playerMP.getUUID());
-                } else if (built == -1) {
-                    playerMP.sendMessage(new TranslatableComponent("structurelib.autoplace.complete"), playerMP.getUUID());
-                }
+                AutoPlaceJobs.toggle(playerMP, tBlockEntity, (ISurvivalConstructable) constructable, aStack);
                 setLastUseMilis(aPlayer);
             } else {
                 playerMP.sendMessage(new TranslatableComponent("structurelib.autoplace.error.not_enabled"), playerMP.getUUID());
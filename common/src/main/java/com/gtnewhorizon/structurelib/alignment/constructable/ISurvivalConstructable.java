@@ -49,8 +49,10 @@ public interface ISurvivalConstructable extends IConstructable {
      * @param elementBudget The server configured element budget. The implementor can choose to tune this up a bit if
      *                      the structure is too big, but generally should not be a 4 digits number to not overwhelm the
      *                      server
-     * @return -1 if done, -2 if not supported (e.g. due to an incompatible change in the API of env, otherwise number
-     *         of elements placed this round
+     * @return -1 if done, -2 if not supported (e.g. due to an incompatible change in the API of env, -3 if nothing was
+     *         placed because items are missing (see
+     *         {@link com.gtnewhorizon.structurelib.structure.IStructureDefinition#survivalBuildPlanned(Object, ItemStack, String, Level, ExtendedFacing, int, int, int, int, int, int, int, ISurvivalBuildEnvironment, boolean)}),
+     *         otherwise number of elements placed this round
      */
     default int survivalConstruct(ItemStack stackSize, int elementBudget, ISurvivalBuildEnvironment env) {
         Player actor = env.getActor();
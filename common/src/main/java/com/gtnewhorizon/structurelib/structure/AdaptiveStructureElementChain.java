@@ -0,0 +1,114 @@
+package com.gtnewhorizon.structurelib.structure;
+
+/**
+ * An OR chain whose {@link #check(Object, StructureBlockInfo)} tries the fallbacks that passed most often first.
+ * <p>
+ * Only {@linkplain IStructureElement#isSnapshotSafe() side effect free} fallbacks are ever moved, and only among
+ * neighbors that are side effect free as well. Since the OR of side effect free checks does not depend on their
+ * order, the result of a check and the side effects of every other fallback stay exactly as in declaration order.
+ * <p>
+ * Hits are counted on every check. The evaluation order is recomputed at most once per server tick, on the first check
+ * after enough hits accumulated, so it stays fixed during a tick. Every other method uses declaration order.
+ *
+ * @see StructureUtility#ofChainAdaptive(IStructureElement[])
+ */
+final class AdaptiveStructureElementChain<T> implements IStructureElementChain<T> {
+
+    /**
+     * Number of checks between two reorders. Counts are halved after each reorder, so old distributions fade out.
+     */
+    private static final int REORDER_INTERVAL = 1024;
+
+    private final IStructureElement<T>[] fallbacks;
+    /**
+     * Whether each fallback is side effect free, and thus may be moved.
+     */
+    private final boolean[] movable;
+    /**
+     * Hits per fallback, in declaration order. Updated without synchronization, so some hits get lost under
+     * concurrency, which is fine for a heuristic.
+     */
+    private final int[] hits;
+    /**
+     * Evaluation order as indices into {@link #fallbacks}. Replaced, never modified.
+     */
+    private volatile int[] order;
+    private int checks;
+    private long reorderedAt = -1;
+
+    AdaptiveStructureElementChain(IStructureElement<T>[] fallbacks) {
+        this.fallbacks = fallbacks;
+        this.movable = new boolean[fallbacks.length];
+        this.hits = new int[fallbacks.length];
+        int[] order = new int[fallbacks.length];
+        for (int i = 0; i < fallbacks.length; i++) {
+            movable[i] = fallbacks[i].isSnapshotSafe();
+            order[i] = i;
+        }
+        this.order = order;
+    }
+
+    @Override
+    public IStructureElement<T>[] fallbacks() {
+        return fallbacks;
+    }
+
+    @Override
+    public boolean check(T t, StructureBlockInfo info) {
+        maybeReorder();
+        for (int i : order) {
+            if (fallbacks[i].check(t, info)) {
+                hits[i]++;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void maybeReorder() {
+        if (++checks < REORDER_INTERVAL) return;
+        long tick = StructureCheckScheduler.currentTick();
+        if (tick == reorderedAt) return;
+        synchronized (this) {
+            if (tick == reorderedAt) return;
+            reorderedAt = tick;
+            checks = 0;
+            order = computeOrder();
+            for (int i = 0; i < hits.length; i++) {
+                hits[i] >>= 1;
+            }
+        }
+    }
+
+    /**
+     * Sort every run of consecutive movable fallbacks by hits, most hits first. Fallbacks that are not movable stay in
+     * place, and separate the runs.
+     */
+    private int[] computeOrder() {
+        int[] order = new int[fallbacks.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        int start = 0;
+        while (start < order.length) {
+            if (!movable[start]) {
+                start++;
+                continue;
+            }
+            int end = start;
+            while (end < order.length && movable[end]) end++;
+            // runs are tiny, insertion sort is fine. stable, so ties keep declaration order
+            for (int i = start + 1; i < end; i++) {
+                int current = order[i];
+                int j = i - 1;
+                while (j >= start && hits[order[j]] < hits[current]) {
+                    order[j + 1] = order[j];
+                    j--;
+                }
+                order[j + 1] = current;
+            }
+            start = end;
+        }
+        return order;
+    }
+}
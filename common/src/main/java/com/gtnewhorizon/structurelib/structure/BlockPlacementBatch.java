@@ -0,0 +1,175 @@
+package com.gtnewhorizon.structurelib.structure;
+
+import com.gtnewhorizon.structurelib.StructureLib;
+import com.gtnewhorizon.structurelib.StructureLibAPI;
+import it.unimi.dsi.fastutil.longs.Long2ObjectLinkedOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongLinkedOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongList;
+import it.unimi.dsi.fastutil.longs.LongSet;
+import net.minecraft.core.BlockPos;
+import net.minecraft.world.item.BlockItem;
+import net.minecraft.world.item.context.BlockPlaceContext;
+import net.minecraft.world.level.BlockGetter;
+import net.minecraft.world.level.Level;
+import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.level.lighting.LevelLightEngine;
+
+/**
+ * Defers the light updates of blocks placed during a build, e.g. a creative build.
+ * <p>
+ * While a batch is active, {@link #setBlock(Level, int, int, int, BlockState)} changes the block and notifies clients
+ * right away, same as the {@code world.setBlock(pos, state, 2)} this replaces, but does not queue a light update.
+ * Neither do neighbours that change their shape in response, e.g. fences or walls next to the build. Light updates of
+ * all these positions are queued when the batch ends, once per position no matter how often it changed in between, and
+ * not at all for placed positions that ended up with the block they had before or whose light properties did not
+ * change.
+ * <p>
+ * Client updates are not deferred, as the chunk holder already sends the changes of a chunk section as one packet. Only
+ * blocks placed through this class are batched. Most survival placement goes through
+ * {@link BlockItem#place(BlockPlaceContext)} and is not.
+ * <p>
+ * Outside a batch, on client side or for another world than the one being batched, this is the same as
+ * {@code world.setBlock(pos, state, 2)}.
+ */
+public final class BlockPlacementBatch {
+
+    /**
+     * Block.UPDATE_CLIENTS and Block.UPDATE_SUPPRESS_LIGHT. Level.setBlock passes both on to neighbour shape updates.
+     */
+    static final int BATCHED_FLAGS = 2 | 128;
+    private static final int SUPPRESS_LIGHT = 128;
+    private static final ThreadLocal<BlockPlacementBatch> CURRENT = new ThreadLocal<>();
+
+    private final Level world;
+    /**
+     * State of each placed position from before its first change, keyed by {@link BlockPos#asLong(int, int, int)}.
+     * In order of the first change.
+     */
+    private final Long2ObjectMap<BlockState> oldStates = new Long2ObjectLinkedOpenHashMap<>();
+    /**
+     * Every position changed without light update while this batch is active, including placed ones. Neighbours
+     * changed in response to a placement are only known from here.
+     */
+    private final LongSet changed = new LongLinkedOpenHashSet();
+    /**
+     * Number of enclosing begin calls. The outermost batch does all the work.
+     */
+    private int depth;
+
+    BlockPlacementBatch(Level world) {
+        this.world = world;
+    }
+
+    /**
+     * Start a batch on current thread. Must be paired with {@link #end()} in a finally block. Batches can nest, the
+     * outermost one decides the world.
+     */
+    static void begin(Level world) {
+        BlockPlacementBatch batch = CURRENT.get();
+        if (batch != null) {
+            batch.depth++;
+            return;
+        }
+        CURRENT.set(new BlockPlacementBatch(world));
+    }
+
+    /**
+     * End the batch on current thread, issuing all deferred updates if it is the outermost one.
+     */
+    static void end() {
+        BlockPlacementBatch batch = CURRENT.get();
+        if (batch == null) throw new IllegalStateException("not batching");
+        if (batch.depth > 0) {
+            batch.depth--;
+            return;
+        }
+        CURRENT.remove();
+        batch.flush();
+    }
+
+    /**
+     * Same as {@code world.setBlock(new BlockPos(x, y, z), state, 2)}, but with light updates deferred while a batch
+     * is active.
+     *
+     * @return true if the block was changed
+     */
+    public static boolean setBlock(Level world, int x, int y, int z, BlockState state) {
+        BlockPlacementBatch batch = CURRENT.get();
+        BlockPos pos = new BlockPos(x, y, z);
+        if (batch == null || batch.world != world || world.isClientSide) return world.setBlock(pos, state, 2);
+        long key = pos.asLong();
+        BlockState old = batch.oldStates.containsKey(key) ? null : StructureBlockAccess.getBlockState(world, x, y, z);
+        if (!world.setBlock(pos, state, BATCHED_FLAGS)) return false;
+        if (old != null) batch.placed(key, old);
+        return true;
+    }
+
+    void placed(long pos, BlockState old) {
+        oldStates.putIfAbsent(pos, old);
+        changed.add(pos);
+    }
+
+    void changed(long pos) {
+        changed.add(pos);
+    }
+
+    /**
+     * @param blocks current blocks
+     * @return positions to check light of, in order of their first change
+     */
+    LongList getLightChecks(BlockGetter blocks) {
+        LongList checks = new LongArrayList(changed.size());
+        BlockPos.MutableBlockPos pos = new BlockPos.MutableBlockPos();
+        for (long key : changed) {
+            BlockState old = oldStates.get(key);
+            if (old == null) {
+                // a neighbour. its state from before is not known
+                checks.add(key);
+                continue;
+            }
+            pos.set(key);
+            BlockState state = blocks.getBlockState(pos);
+            if (old == state) continue;
+            // same condition as in Level.setBlock
+            if (old.getLightBlock(blocks, pos) != state.getLightBlock(blocks, pos)
+                    || old.getLightEmission() != state.getLightEmission()
+                    || old.useShapeForLightOcclusion()
+                    || state.useShapeForLightOcclusion())
+                checks.add(key);
+        }
+        return checks;
+    }
+
+    private void flush() {
+        if (changed.isEmpty()) return;
+        long start = System.nanoTime();
+        LongList checks = getLightChecks(world);
+        LevelLightEngine lightEngine = world.getChunkSource().getLightEngine();
+        for (int i = 0; i < checks.size(); i++) {
+            lightEngine.checkBlock(BlockPos.of(checks.getLong(i)));
+        }
+        if (StructureLibAPI.isDebugEnabled()) StructureLib.LOGGER.info(
+                "Placement batch flushed {} changed positions, {} placed, {} light checks in {} us",
+                changed.size(),
+                oldStates.size(),
+                checks.size(),
+                (System.nanoTime() - start) / 1000);
+    }
+
+    // region platform hooks
+
+    /**
+     * Called by platform code whenever a block changed. Not a stable API.
+     *
+     * @param flags the flags given to {@link Level#setBlock(BlockPos, BlockState, int, int)}
+     */
+    public static void onBlockChanged(Level world, BlockPos pos, int flags) {
+        if ((flags & SUPPRESS_LIGHT) == 0) return;
+        BlockPlacementBatch batch = CURRENT.get();
+        if (batch != null && batch.world == world) batch.changed(pos.asLong());
+    }
+
+    // endregion
+}
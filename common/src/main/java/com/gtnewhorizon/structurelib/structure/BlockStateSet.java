@@ -0,0 +1,96 @@
+package com.gtnewhorizon.structurelib.structure;
+
+import java.util.function.Predicate;
+
+import net.minecraft.world.level.block.Block;
+import net.minecraft.world.level.block.state.BlockState;
+
+/**
+ * A set of block states compiled from a predicate into a bitset indexed by {@link Block#getId(BlockState)}, so that
+ * testing a block state is one array read no matter how expensive the predicate is, e.g. a chain of several blocks
+ * and tags.
+ * <p>
+ * The bitset is built on first use and rebuilt on first use after tags have been reloaded, as the predicate might
+ * depend on tags. Building it evaluates the predicate once for every registered block state.
+ * <p>
+ * Thread safe.
+ */
+public final class BlockStateSet implements Predicate<BlockState> {
+
+    private static volatile int generation;
+
+    private final Predicate<BlockState> predicate;
+    private volatile Bits bits;
+
+    private static final class Bits {
+
+        private final long[] words;
+        private final int generation;
+
+        private Bits(long[] words, int generation) {
+            this.words = words;
+            this.generation = generation;
+        }
+    }
+
+    private BlockStateSet(Predicate<BlockState> predicate) {
+        this.predicate = predicate;
+    }
+
+    /**
+     * @param predicate the block states to accept. must be side effect free, as it is evaluated at unspecified times.
+     * @return the set. might be the predicate itself if it is already a BlockStateSet.
+     */
+    public static BlockStateSet of(Predicate<BlockState> predicate) {
+        if (predicate == null) throw new IllegalArgumentException();
+        if (predicate instanceof BlockStateSet) return (BlockStateSet) predicate;
+        return new BlockStateSet(predicate);
+    }
+
+    public boolean contains(BlockState state) {
+        Bits bits = this.bits;
+        if (bits == null || bits.generation != generation) bits = rebuild();
+        int id = Block.getId(state);
+        // unregistered states have id -1, which lands way past the end
+        int word = id >>> 6;
+        return word < bits.words.length && (bits.words[word] & 1L << id) != 0;
+    }
+
+    @Override
+    public boolean test(BlockState state) {
+        return contains(state);
+    }
+
+    private Bits rebuild() {
+        // read generation first, so that a concurrent tag reload forces yet another rebuild
+        int generation = BlockStateSet.generation;
+        long[] words = new long[(Block.BLOCK_STATE_REGISTRY.size() + 63) >>> 6];
+        for (BlockState state : Block.BLOCK_STATE_REGISTRY) {
+            if (predicate.test(state)) {
+                int id = Block.getId(state);
+                words[id >>> 6] |= 1L << id;
+            }
+        }
+        Bits bits = new Bits(words, generation);
+        this.bits = bits;
+        return bits;
+    }
+
+    /**
+     * @return a number that changes whenever tags or block state ids might have changed
+     */
+    static int generation() {
+        return generation;
+    }
+
+    // region platform hooks
+
+    /**
+     * Called by platform code whenever tags or block state ids might have changed. Not a stable API.
+     */
+    public static synchronized void onTagsUpdated() {
+        generation++;
+    }
+
+    // endregion
+}
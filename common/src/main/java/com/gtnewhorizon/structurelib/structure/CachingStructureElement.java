@@ -0,0 +1,90 @@
+package com.gtnewhorizon.structurelib.structure;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import net.minecraft.network.chat.Component;
+import net.minecraft.server.level.ServerPlayer;
+import net.minecraft.world.item.ItemStack;
+import net.minecraft.world.level.Level;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * A deferred element that resolves the downstream element once per partition key, and reuses it for every later visit
+ * with an equal key.
+ * <p>
+ * Resolved elements are kept in a bounded cache, which evicts the least recently used keys first. With weak keys, keys
+ * are compared by identity and dropped once garbage collected, so that e.g. context objects can be used as keys
+ * without leaking them.
+ *
+ * @see StructureUtility#deferCached(Function, Function)
+ */
+class CachingStructureElement<T, K> implements IStructureElementDeferred<T> {
+
+    private final Function<T, K> keyExtractor;
+    private final LoadingCache<K, IStructureElement<T>> cache;
+
+    CachingStructureElement(Function<T, K> keyExtractor, Function<? super K, IStructureElement<T>> to,
+            int maximumSize, boolean weakKeys) {
+        this.keyExtractor = keyExtractor;
+        CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder().maximumSize(maximumSize);
+        if (weakKeys) builder.weakKeys();
+        this.cache = builder.build(CacheLoader.from(to::apply));
+    }
+
+    private IStructureElement<T> get(T t) {
+        return cache.getUnchecked(keyExtractor.apply(t));
+    }
+
+    @Override
+    public boolean check(T t, Level world, int x, int y, int z) {
+        return get(t).check(t, world, x, y, z);
+    }
+
+    @Override
+    public boolean check(T t, StructureBlockInfo info) {
+        return get(t).check(t, info);
+    }
+
+    @Override
+    public boolean placeBlock(T t, Level world, int x, int y, int z, ItemStack trigger) {
+        return get(t).placeBlock(t, world, x, y, z, trigger);
+    }
+
+    @Override
+    public boolean spawnHint(T t, Level world, int x, int y, int z, ItemStack trigger) {
+        return get(t).spawnHint(t, world, x, y, z, trigger);
+    }
+
+    @Nullable
+    @Override
+    public BlocksToPlace getBlocksToPlace(T t, Level world, int x, int y, int z, ItemStack trigger,
+            AutoPlaceEnvironment env) {
+        return get(t).getBlocksToPlace(t, world, x, y, z, trigger, env);
+    }
+
+    @Override
+    public PlaceResult survivalPlaceBlock(T t, Level world, int x, int y, int z, ItemStack trigger, IItemSource s,
+            ServerPlayer actor, Consumer<Component> chatter) {
+        return get(t).survivalPlaceBlock(t, world, x, y, z, trigger, s, actor, chatter);
+    }
+
+    @Override
+    public PlaceResult survivalPlaceBlock(T t, Level world, int x, int y, int z, ItemStack trigger,
+            AutoPlaceEnvironment env) {
+        return get(t).survivalPlaceBlock(t, world, x, y, z, trigger, env);
+    }
+
+    @Override
+    public void onStructureSuccess(T t, Level world, int x, int y, int z) {
+        get(t).onStructureSuccess(t, world, x, y, z);
+    }
+
+    @Override
+    public void onStructureFail(T t, Level world, int x, int y, int z) {
+        get(t).onStructureFail(t, world, x, y, z);
+    }
+}
@@ -0,0 +1,69 @@
+package com.gtnewhorizon.structurelib.structure;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+import net.minecraft.core.Registry;
+import net.minecraft.world.level.block.Block;
+
+/**
+ * Remembers the tier of every block seen so far in an array indexed by numeric block id, so that converting a block
+ * is an array load after the first time. Forgets everything once tags have been reloaded, as the backing converter
+ * might depend on tags.
+ * <p>
+ * Thread safe, provided the backing converter is.
+ *
+ * @param <TIER> type of tier
+ */
+final class CachingTierConverter<TIER> implements ITierConverter<TIER> {
+
+    private static final VarHandle ELEMENTS = MethodHandles.arrayElementVarHandle(Object[].class);
+    /**
+     * Cached in place of null tier, as null marks a block not yet converted.
+     */
+    private static final Object NO_TIER = new Object();
+
+    private final ITierConverter<TIER> backing;
+    private volatile Table table;
+
+    private static final class Table {
+
+        private final Object[] tiers;
+        private final int generation;
+
+        private Table(Object[] tiers, int generation) {
+            this.tiers = tiers;
+            this.generation = generation;
+        }
+    }
+
+    private CachingTierConverter(ITierConverter<TIER> backing) {
+        this.backing = backing;
+    }
+
+    static <TIER> ITierConverter<TIER> of(ITierConverter<TIER> converter) {
+        if (converter instanceof CachingTierConverter) return converter;
+        return new CachingTierConverter<>(converter);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public TIER convert(Block block) {
+        Table table = this.table;
+        int generation = BlockStateSet.generation();
+        if (table == null || table.generation != generation) {
+            table = new Table(new Object[Registry.BLOCK.size()], generation);
+            this.table = table;
+        }
+        int id = Registry.BLOCK.getId(block);
+        // unregistered block, or block registered after the table was sized
+        if (id < 0 || id >= table.tiers.length) return backing.convert(block);
+        Object cached = ELEMENTS.getAcquire(table.tiers, id);
+        if (cached == null) {
+            TIER tier = backing.convert(block);
+            ELEMENTS.setRelease(table.tiers, id, tier == null ? NO_TIER : tier);
+            return tier;
+        }
+        return cached == NO_TIER ? null : (TIER) cached;
+    }
+}
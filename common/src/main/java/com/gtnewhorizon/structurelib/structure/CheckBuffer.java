@@ -0,0 +1,111 @@
+package com.gtnewhorizon.structurelib.structure;
+
+import java.util.Arrays;
+
+import net.minecraft.core.BlockPos;
+import net.minecraft.world.level.Level;
+
+/**
+ * Per thread scratch space for structure checks.
+ * <p>
+ * Records every visited element along with its position, packed as per {@link BlockPos#asLong(int, int, int)}, so
+ * that {@link IStructureElement#onStructureSuccess(Object, Level, int, int, int)} and
+ * {@link IStructureElement#onStructureFail(Object, Level, int, int, int)} can be replayed once the check is done. The
+ * backing arrays only ever grow, so a thread that keeps checking structures of similar size does not allocate
+ * anything once warmed up.
+ * <p>
+ * A structure check can trigger another structure check on the same thread (e.g. from within an element), so buffers
+ * form a chain. {@link #acquire()} hands out the first buffer not in use and {@link #release()} must be called in a
+ * finally block once done.
+ */
+final class CheckBuffer {
+
+    private static final int INITIAL_CAPACITY = 64;
+    private static final ThreadLocal<CheckBuffer> HEAD = ThreadLocal.withInitial(CheckBuffer::new);
+
+    private long[] positions = new long[INITIAL_CAPACITY];
+    private IStructureElement<?>[] elements = new IStructureElement<?>[INITIAL_CAPACITY];
+    private int size;
+    private boolean inUse;
+    private CheckBuffer next;
+    /**
+     * Scratch space for coordinate transformation.
+     */
+    final int[] in = new int[3], out = new int[3];
+    /**
+     * Block at the position currently being checked. Shared by all elements at that position.
+     */
+    final StructureBlockInfo info = new StructureBlockInfo();
+    private final StructurePlan.Cursor<?> cursor = new StructurePlan.Cursor<>();
+
+    private CheckBuffer() {}
+
+    static CheckBuffer acquire() {
+        CheckBuffer buffer = HEAD.get();
+        while (buffer.inUse) {
+            if (buffer.next == null) buffer.next = new CheckBuffer();
+            buffer = buffer.next;
+        }
+        buffer.inUse = true;
+        return buffer;
+    }
+
+    /**
+     * Create a buffer that is not bound to any thread. Used when a check runs on one thread and its result is replayed
+     * on another.
+     */
+    static CheckBuffer detached() {
+        CheckBuffer buffer = new CheckBuffer();
+        buffer.inUse = true;
+        return buffer;
+    }
+
+    void release() {
+        // do not keep elements alive longer than necessary
+        Arrays.fill(elements, 0, size, null);
+        info.set(null, 0, 0, 0);
+        cursor.clear();
+        size = 0;
+        inUse = false;
+    }
+
+    /**
+     * @return the cursor of this buffer, reset to the start of given plan
+     */
+    @SuppressWarnings("unchecked")
+    <T> StructurePlan.Cursor<T> cursor(StructurePlan<T> plan) {
+        return ((StructurePlan.Cursor<T>) cursor).reset(plan);
+    }
+
+    void add(IStructureElement<?> element, int x, int y, int z) {
+        if (size == positions.length) {
+            positions = Arrays.copyOf(positions, size << 1);
+            elements = Arrays.copyOf(elements, size << 1);
+        }
+        positions[size] = BlockPos.asLong(x, y, z);
+        elements[size] = element;
+        size++;
+    }
+
+    int size() {
+        return size;
+    }
+
+    @SuppressWarnings("unchecked")
+    <T> void replaySuccess(T object, Level world) {
+        for (int i = 0; i < size; i++) {
+            long pos = positions[i];
+            ((IStructureElement<T>) elements[i])
+                    .onStructureSuccess(object, world, BlockPos.getX(pos), BlockPos.getY(pos), BlockPos.getZ(pos));
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    <T> void replayFail(T object, Level world) {
+        for (int i = 0; i < size; i++) {
+            long pos = positions[i];
+            ((IStructureElement<T>) elements[i])
+                    .onStructureFail(object, world, BlockPos.getX(pos), BlockPos.getY(pos), BlockPos.getZ(pos));
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package com.gtnewhorizon.structurelib.structure;
+
+import com.gtnewhorizon.structurelib.StructureLib;
+import com.gtnewhorizon.structurelib.StructureLibAPI;
+import com.gtnewhorizon.structurelib.alignment.enumerable.ExtendedFacing;
+import net.minecraft.world.level.Level;
+
+/**
+ * One structure check in a {@linkplain ParallelStructureCheck#checkAll(java.util.Collection) batch}. Takes the same
+ * arguments as {@link IStructureDefinition#check(Object, String, Level, ExtendedFacing, int, int, int, int, int, int,
+ * boolean)}.
+ * <p>
+ * A request can be submitted again in a later batch, but not to two batches at the same time.
+ *
+ * @param <T> Type of the context object.
+ */
+public final class CheckRequest<T> {
+
+    private final IStructureDefinition<T> definition;
+    private final T object;
+    private final String piece;
+    private final Level world;
+    private final ExtendedFacing extendedFacing;
+    private final int basePositionX, basePositionY, basePositionZ, basePositionA, basePositionB, basePositionC;
+    private final boolean forceCheckAllBlocks;
+
+    // region state of current batch
+    private StructurePlan<T> plan;
+    private CheckBuffer buffer;
+    private boolean result;
+    // endregion
+
+    /**
+     * @param definition          the structure definition
+     * @param object              context object. usually multiblock controller.
+     * @param piece               the structure piece's string identifier.
+     * @param world               the world object this check takes place in.
+     * @param extendedFacing      the current structure's orientation.
+     * @param basePositionX       X location of the structure
+     * @param basePositionY       Y location of the structure
+     * @param basePositionZ       Z location of the structure
+     * @param basePositionA       see {@link IStructureDefinition} class javadoc
+     * @param basePositionB       see {@link IStructureDefinition} class javadoc
+     * @param basePositionC       see {@link IStructureDefinition} class javadoc
+     * @param forceCheckAllBlocks check all location even if chunk not currently loaded.
+     */
+    public CheckRequest(IStructureDefinition<T> definition, T object, String piece, Level world,
+            ExtendedFacing extendedFacing, int basePositionX, int basePositionY, int basePositionZ, int basePositionA,
+            int basePositionB, int basePositionC, boolean forceCheckAllBlocks) {
+        if (definition == null || piece == null || world == null || extendedFacing == null)
+            throw new IllegalArgumentException();
+        this.definition = definition;
+        this.object = object;
+        this.piece = piece;
+        this.world = world;
+        this.extendedFacing = extendedFacing;
+        this.basePositionX = basePositionX;
+        this.basePositionY = basePositionY;
+        this.basePositionZ = basePositionZ;
+        this.basePositionA = basePositionA;
+        this.basePositionB = basePositionB;
+        this.basePositionC = basePositionC;
+        this.forceCheckAllBlocks = forceCheckAllBlocks;
+    }
+
+    public T getObject() {
+        return object;
+    }
+
+    public String getPiece() {
+        return piece;
+    }
+
+    public Level getWorld() {
+        return world;
+    }
+
+    /**
+     * Resolve the plan and decide whether this request can be evaluated against a snapshot. Server thread only.
+     */
+    boolean prepare() {
+        plan = definition.getPlanFor(piece, extendedFacing);
+        return !world.isDebug() && plan.isSnapshotSafe();
+    }
+
+    /**
+     * @return positions of all elements of the plan resolved by {@link #prepare()}
+     */
+    long[] getPositions() {
+        return plan.toLevelPositions(
+                basePositionX,
+                basePositionY,
+                basePositionZ,
+                basePositionA,
+                basePositionB,
+                basePositionC);
+    }
+
+    /**
+     * Run the pure part of the check against given snapshot, recording what needs to be replayed. Any thread.
+     */
+    void evaluate(ChunkSnapshot snapshot) {
+        buffer = CheckBuffer.detached();
+        StructureBlockAccess.begin(snapshot);
+        try {
+            result = StructureUtility.checkV2(
+                    plan,
+                    object,
+                    world,
+                    basePositionX,
+                    basePositionY,
+                    basePositionZ,
+                    basePositionA,
+                    basePositionB,
+                    basePositionC,
+                    forceCheckAllBlocks,
+                    false,
+                    buffer);
+        } finally {
+            StructureBlockAccess.end();
+        }
+    }
+
+    /**
+     * Apply the side effects of {@link #evaluate(ChunkSnapshot)}. Server thread only.
+     */
+    boolean apply() {
+        try {
+            if (result) {
+                buffer.replaySuccess(object, world);
+                if (StructureLibAPI.isDebugEnabled()) {
+                    StructureLib.LOGGER
+                            .info("Multi [" + basePositionX + ", " + basePositionY + ", " + basePositionZ + "] pass");
+                }
+            } else {
+                buffer.replayFail(object, world);
+            }
+        } finally {
+            buffer.release();
+            buffer = null;
+        }
+        StructureIndex.update(
+                object,
+                definition,
+                piece,
+                plan,
+                world,
+                basePositionX,
+                basePositionY,
+                basePositionZ,
+                basePositionA,
+                basePositionB,
+                basePositionC,
+                result);
+        plan = null;
+        return result;
+    }
+
+    /**
+     * Run the whole check the usual way. Server thread only.
+     */
+    boolean checkSerially() {
+        plan = null;
+        buffer = null;
+        return definition.check(
+                object,
+                piece,
+                world,
+                extendedFacing,
+                basePositionX,
+                basePositionY,
+                basePositionZ,
+                basePositionA,
+                basePositionB,
+                basePositionC,
+                forceCheckAllBlocks);
+    }
+
+    @Override
+    public String toString() {
+        return "CheckRequest{" + "object="
+                + object
+                + ", piece='"
+                + piece
+                + '\''
+                + ", x="
+                + basePositionX
+                + ", y="
+                + basePositionY
+                + ", z="
+                + basePositionZ
+                + '}';
+    }
+}
@@ -0,0 +1,82 @@
+package com.gtnewhorizon.structurelib.structure;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.SectionPos;
+import net.minecraft.world.level.Level;
+import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.level.chunk.LevelChunk;
+import net.minecraft.world.level.chunk.PalettedContainer;
+
+/**
+ * Immutable copy of the block states of some chunk sections of one world, so that structures can be checked off the
+ * server thread. Only block states are copied.
+ * <p>
+ * Sections are captured on the server thread using {@link #capture(long[])}. Once capturing is done the snapshot can
+ * be read from any number of threads.
+ */
+final class ChunkSnapshot {
+
+    final Level world;
+    /**
+     * Build height of world, inclusive and exclusive respectively.
+     */
+    final int minY, maxY;
+    /**
+     * Keyed by {@link SectionPos#asLong(int, int, int)}. Sections of unloaded chunks map to null.
+     */
+    private final Long2ObjectMap<PalettedContainer<BlockState>> sections = new Long2ObjectOpenHashMap<>();
+
+    ChunkSnapshot(Level world) {
+        this(world, world.getMinBuildHeight(), world.getMaxBuildHeight());
+    }
+
+    ChunkSnapshot(Level world, int minY, int maxY) {
+        this.world = world;
+        this.minY = minY;
+        this.maxY = maxY;
+    }
+
+    /**
+     * Copy all sections containing given positions that have not been copied yet. Must be called on server thread.
+     *
+     * @param positions positions as per {@link BlockPos#asLong(int, int, int)}
+     */
+    void capture(long[] positions) {
+        long lastKey = 0;
+        boolean first = true;
+        for (long pos : positions) {
+            int y = BlockPos.getY(pos);
+            if (y < minY || y >= maxY) continue;
+            int sectionX = SectionPos.blockToSectionCoord(BlockPos.getX(pos));
+            int sectionY = SectionPos.blockToSectionCoord(y);
+            int sectionZ = SectionPos.blockToSectionCoord(BlockPos.getZ(pos));
+            long key = SectionPos.asLong(sectionX, sectionY, sectionZ);
+            // consecutive positions are usually in the same section
+            if (!first && key == lastKey) continue;
+            first = false;
+            lastKey = key;
+            if (sections.containsKey(key)) continue;
+            LevelChunk chunk = world.getChunkSource().getChunkNow(sectionX, sectionZ);
+            put(key, chunk == null ? null : chunk.getSection(world.getSectionIndexFromSectionY(sectionY)).getStates());
+        }
+    }
+
+    /**
+     * Copy given section.
+     *
+     * @param key    as per {@link SectionPos#asLong(int, int, int)}
+     * @param states block states of the section, or null if its chunk is not loaded
+     */
+    void put(long key, PalettedContainer<BlockState> states) {
+        sections.put(key, states == null ? null : states.copy());
+    }
+
+    /**
+     * @return block states of the section, or null if it was not captured or its chunk was not loaded
+     */
+    PalettedContainer<BlockState> getSection(long key) {
+        return sections.get(key);
+    }
+}
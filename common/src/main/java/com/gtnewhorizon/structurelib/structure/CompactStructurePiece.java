@@ -0,0 +1,264 @@
+package com.gtnewhorizon.structurelib.structure;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
+
+import it.unimi.dsi.fastutil.bytes.ByteArrayList;
+import it.unimi.dsi.fastutil.chars.Char2IntMap;
+import it.unimi.dsi.fastutil.chars.Char2IntOpenHashMap;
+import it.unimi.dsi.fastutil.chars.Char2ObjectMap;
+import it.unimi.dsi.fastutil.chars.CharArrayList;
+
+/**
+ * The elements of a structure piece, including navigates, stored as a palette of distinct elements plus a run length
+ * encoded stream of palette indices.
+ * <p>
+ * Each run is two unsigned varints, the palette index followed by the run length, so a run of casings costs two bytes
+ * in most structures regardless of its length, instead of one reference per block. The stream can only be walked from
+ * the start, use {@link #forEachRun(RunConsumer)} or {@link #forEach(Consumer)} to process the piece, or
+ * {@link #toArray()} to get the elements as a plain array.
+ * <p>
+ * Immutable.
+ *
+ * @param <T> Type of the context object.
+ */
+public final class CompactStructurePiece<T> implements Iterable<IStructureElement<T>> {
+
+    /**
+     * The shape char of each palette entry.
+     */
+    private final char[] chars;
+    private final IStructureElement<T>[] palette;
+    private final byte[] runs;
+    private final int size;
+
+    private CompactStructurePiece(char[] chars, IStructureElement<T>[] palette, byte[] runs, int size) {
+        this.chars = chars;
+        this.palette = palette;
+        this.runs = runs;
+        this.size = size;
+    }
+
+    @FunctionalInterface
+    public interface RunConsumer<T> {
+
+        /**
+         * @param element the element
+         * @param count   how many times it repeats. at least 1.
+         */
+        void accept(IStructureElement<T> element, int count);
+    }
+
+    /**
+     * Run length encodes the chars of a shape as they are produced by {@link StructureDefinition.Builder}, so that the
+     * shape never needs to be held as a string. Elements are bound to the chars later, since they can be added to the
+     * builder after the shape.
+     */
+    static final class Encoder {
+
+        private final Char2IntMap indices = new Char2IntOpenHashMap();
+        private final CharArrayList chars = new CharArrayList();
+        private final ByteArrayList runs = new ByteArrayList();
+        private char current;
+        private int count;
+        private int size;
+        private byte[] encoded;
+
+        Encoder() {
+            indices.defaultReturnValue(-1);
+        }
+
+        void add(char ch) {
+            if (count > 0 && ch != current) flush();
+            current = ch;
+            count++;
+            size++;
+        }
+
+        private void flush() {
+            int index = indices.get(current);
+            if (index < 0) {
+                index = chars.size();
+                indices.put(current, index);
+                chars.add(current);
+            }
+            writeVarInt(runs, index);
+            writeVarInt(runs, count);
+            count = 0;
+        }
+
+        /**
+         * Done adding chars. Must be called once before {@link #bind(Char2ObjectMap)}.
+         */
+        Encoder finish() {
+            if (count > 0) flush();
+            encoded = runs.toByteArray();
+            return this;
+        }
+
+        /**
+         * @return every distinct char of the shape, in order of first appearance
+         */
+        char[] getChars() {
+            return chars.toCharArray();
+        }
+
+        /**
+         * @param elements element of each char. must contain every char of the shape.
+         */
+        @SuppressWarnings("unchecked")
+        <T> CompactStructurePiece<T> bind(Char2ObjectMap<IStructureElement<T>> elements) {
+            char[] chars = getChars();
+            IStructureElement<T>[] palette = new IStructureElement[chars.length];
+            for (int j = 0; j < palette.length; j++) {
+                palette[j] = elements.get(chars[j]);
+            }
+            return new CompactStructurePiece<>(chars, palette, encoded, size);
+        }
+
+        String toShape() {
+            return new CompactStructurePiece<>(getChars(), null, encoded, size).toShape();
+        }
+    }
+
+    static void writeVarInt(ByteArrayList out, int value) {
+        while ((value & ~0x7f) != 0) {
+            out.add((byte) (value & 0x7f | 0x80));
+            value >>>= 7;
+        }
+        out.add((byte) value);
+    }
+
+    /**
+     * @return the palette itself, not a copy. must not be modified.
+     */
+    IStructureElement<T>[] getPalette() {
+        return palette;
+    }
+
+    /**
+     * @return the encoded runs themselves, not a copy. must not be modified.
+     */
+    byte[] getRuns() {
+        return runs;
+    }
+
+    /**
+     * @return number of elements, counting each repetition
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return number of distinct elements
+     */
+    public int getPaletteSize() {
+        return palette.length;
+    }
+
+    public IStructureElement<T> getPaletteElement(int index) {
+        return palette[index];
+    }
+
+    /**
+     * Visit every run of repeated elements, in order.
+     */
+    public void forEachRun(RunConsumer<T> consumer) {
+        forEachIndexRun((index, count) -> consumer.accept(palette[index], count));
+    }
+
+    private interface IndexRunConsumer {
+
+        void accept(int index, int count);
+    }
+
+    private void forEachIndexRun(IndexRunConsumer consumer) {
+        byte[] runs = this.runs;
+        int pos = 0;
+        while (pos < runs.length) {
+            int index = 0, count = 0;
+            for (int shift = 0;; shift += 7) {
+                byte b = runs[pos++];
+                index |= (b & 0x7f) << shift;
+                if (b >= 0) break;
+            }
+            for (int shift = 0;; shift += 7) {
+                byte b = runs[pos++];
+                count |= (b & 0x7f) << shift;
+                if (b >= 0) break;
+            }
+            consumer.accept(index, count);
+        }
+    }
+
+    @Override
+    public void forEach(Consumer<? super IStructureElement<T>> action) {
+        forEachRun((element, count) -> {
+            for (int i = 0; i < count; i++) action.accept(element);
+        });
+    }
+
+    @Override
+    public Iterator<IStructureElement<T>> iterator() {
+        return new Iterator<IStructureElement<T>>() {
+
+            private int pos;
+            private IStructureElement<T> element;
+            private int remaining;
+
+            @Override
+            public boolean hasNext() {
+                return remaining > 0 || pos < runs.length;
+            }
+
+            @Override
+            public IStructureElement<T> next() {
+                if (remaining == 0) {
+                    if (pos >= runs.length) throw new NoSuchElementException();
+                    element = palette[readVarInt()];
+                    remaining = readVarInt();
+                }
+                remaining--;
+                return element;
+            }
+
+            private int readVarInt() {
+                int value = 0;
+                for (int shift = 0;; shift += 7) {
+                    byte b = runs[pos++];
+                    value |= (b & 0x7f) << shift;
+                    if (b >= 0) return value;
+                }
+            }
+        };
+    }
+
+    /**
+     * @return a new array of all elements, one per repetition
+     */
+    @SuppressWarnings("unchecked")
+    public IStructureElement<T>[] toArray() {
+        IStructureElement<T>[] array = new IStructureElement[size];
+        int[] pos = new int[1];
+        forEachRun((element, count) -> {
+            int start = pos[0];
+            pos[0] += count;
+            Arrays.fill(array, start, pos[0], element);
+        });
+        return array;
+    }
+
+    /**
+     * @return the shape this piece was encoded from
+     */
+    public String toShape() {
+        StringBuilder shape = new StringBuilder(size);
+        forEachIndexRun((index, count) -> {
+            for (int i = 0; i < count; i++) shape.append(chars[index]);
+        });
+        return shape.toString();
+    }
+}
@@ -0,0 +1,137 @@
+package com.gtnewhorizon.structurelib.structure;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSet;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.SectionPos;
+import net.minecraft.world.level.ChunkPos;
+
+/**
+ * Spatial index from block position to structure footprints covering it, bucketed by chunk. Finding the footprints
+ * at a position is one hash lookup for the chunk plus one hash lookup per footprint in that chunk.
+ * <p>
+ * Not thread safe.
+ *
+ * @param <E> type of footprint
+ */
+final class FootprintIndex<E extends FootprintIndex.Footprint> {
+
+    /**
+     * The set of positions occupied by one structure.
+     */
+    static class Footprint {
+
+        /**
+         * Positions as per {@link BlockPos#asLong(int, int, int)}. Null if only chunks are tracked.
+         */
+        private final LongSet positions;
+        /**
+         * Chunks as per {@link ChunkPos#toLong()} touched by this footprint, no duplicates.
+         */
+        private final long[] chunks;
+
+        Footprint(long[] positions) {
+            this(positions, true);
+        }
+
+        /**
+         * @param trackPositions if false, only the touched chunks are remembered. Such footprint is never returned by
+         *                       {@link #getAt(int, int, int)}, but is still evicted by {@link #removeChunk(long)}.
+         */
+        Footprint(long[] positions, boolean trackPositions) {
+            this.positions = trackPositions ? new LongOpenHashSet(positions) : null;
+            LongArrayList chunks = new LongArrayList();
+            long last = 0;
+            for (long pos : positions) {
+                long chunk = ChunkPos.asLong(
+                        SectionPos.blockToSectionCoord(BlockPos.getX(pos)),
+                        SectionPos.blockToSectionCoord(BlockPos.getZ(pos)));
+                // positions are mostly ordered along one axis, so this weeds out most duplicates cheaply
+                if (chunks.isEmpty() || chunk != last && !chunks.contains(chunk)) chunks.add(chunk);
+                last = chunk;
+            }
+            this.chunks = chunks.toLongArray();
+        }
+
+        boolean contains(long pos) {
+            return positions != null && positions.contains(pos);
+        }
+
+        long[] getChunks() {
+            return chunks;
+        }
+    }
+
+    private final Long2ObjectMap<List<E>> byChunk = new Long2ObjectOpenHashMap<>();
+
+    void add(E footprint) {
+        for (long chunk : footprint.getChunks()) {
+            byChunk.computeIfAbsent(chunk, k -> new ArrayList<>(2)).add(footprint);
+        }
+    }
+
+    void remove(E footprint) {
+        for (long chunk : footprint.getChunks()) {
+            List<E> list = byChunk.get(chunk);
+            if (list == null) continue;
+            list.remove(footprint);
+            if (list.isEmpty()) byChunk.remove(chunk);
+        }
+    }
+
+    boolean isEmpty() {
+        return byChunk.isEmpty();
+    }
+
+    /**
+     * @return true if any footprint touches given chunk
+     */
+    boolean touches(long chunk) {
+        return byChunk.containsKey(chunk);
+    }
+
+    /**
+     * @return all footprints containing given position. never null. might be immutable.
+     */
+    List<E> getAt(int x, int y, int z) {
+        List<E> list = byChunk
+                .get(ChunkPos.asLong(SectionPos.blockToSectionCoord(x), SectionPos.blockToSectionCoord(z)));
+        if (list == null) return Collections.emptyList();
+        long pos = BlockPos.asLong(x, y, z);
+        List<E> result = null;
+        for (E footprint : list) {
+            if (footprint.contains(pos)) {
+                if (result == null) result = new ArrayList<>(1);
+                result.add(footprint);
+            }
+        }
+        return result == null ? Collections.emptyList() : result;
+    }
+
+    /**
+     * Remove all footprints touching given chunk from this index, including from all other chunks they touch.
+     *
+     * @return removed footprints. never null. might be immutable.
+     */
+    List<E> removeChunk(long chunk) {
+        List<E> list = byChunk.remove(chunk);
+        if (list == null) return Collections.emptyList();
+        for (E footprint : list) {
+            for (long other : footprint.getChunks()) {
+                if (other == chunk) continue;
+                List<E> otherList = byChunk.get(other);
+                if (otherList == null) continue;
+                otherList.remove(footprint);
+                if (otherList.isEmpty()) byChunk.remove(other);
+            }
+        }
+        return list;
+    }
+}
@@ -10,6 +10,9 @@ public interface ICustomBlockSetting {
     /**
      * Default block setting calls {@link Level#setBlock(BlockPos pos, BlockState block, int updateType)}
      * like: {@code world.setBlock(x,y,z,this/block,meta,2)} where updateType 2 means to update lighting and stuff
+     * <p>
+     * Use {@link BlockPlacementBatch#setBlock(Level, int, int, int, BlockState)} instead of calling world directly to
+     * have light updates deferred during a build.
      *
      * @param world world that should be affected
      * @param x     x position to set
@@ -4,6 +4,7 @@ import com.gtnewhorizon.structurelib.util.InventoryIterable;
 import com.gtnewhorizon.structurelib.util.InventoryUtility;
 import com.gtnewhorizon.structurelib.util.ItemStackPredicate;
 import com.gtnewhorizon.structurelib.util.ItemStackPredicate.NBTMode;
+import com.gtnewhorizon.structurelib.util.PlayerInventoryIndex;
 import net.minecraft.server.level.ServerPlayer;
 import net.minecraft.world.Container;
 import net.minecraft.world.item.ItemStack;
@@ -133,6 +134,38 @@ public interface IItemSource {
         };
     }
 
+    /**
+     * Construct an IItemSource from an index of the inventories associated with a player. Exact item stack lookups
+     * are served from the index, everything else is delegated to {@link #fromPlayer(ServerPlayer)}.
+     * <p>
+     * Call {@link PlayerInventoryIndex#commit()} once done with the returned source.
+     *
+     * @see InventoryUtility#indexPlayerInventory(ServerPlayer)
+     */
+    static IItemSource fromPlayer(ServerPlayer player, PlayerInventoryIndex index) {
+        IItemSource fallback = fromPlayer(player);
+        return new IItemSource() {
+
+            @NotNull
+            @Override
+            public Map<ItemStack, Integer> take(Predicate<ItemStack> p, boolean s, int c) {
+                return fallback.take(p, s, c);
+            }
+
+            @Override
+            public boolean takeOne(ItemStack stack, boolean simulate) {
+                if (stack.isEmpty() || stack.getCount() != 1) throw new IllegalArgumentException();
+                return index.take(stack, simulate) == 1;
+            }
+
+            @Override
+            public boolean takeAll(ItemStack stack, boolean simulate) {
+                if (stack.isEmpty()) throw new IllegalArgumentException();
+                return index.take(stack, simulate) == stack.getCount();
+            }
+        };
+    }
+
     /**
      * Construct an IItemSource from given inventory
      * <p>
@@ -1,9 +1,7 @@
 package com.gtnewhorizon.structurelib.structure;
 
 import static com.gtnewhorizon.structurelib.structure.IStructureWalker.ignoreBlockUnloaded;
-import static com.gtnewhorizon.structurelib.structure.IStructureWalker.skipBlockUnloaded;
 
-import java.util.Map;
 import java.util.function.Function;
 
 
@@ -11,12 +9,11 @@ import com.gtnewhorizon.structurelib.StructureLib;
 import com.gtnewhorizon.structurelib.StructureLibAPI;
 import com.gtnewhorizon.structurelib.alignment.constructable.ISurvivalConstructable;
 import com.gtnewhorizon.structurelib.alignment.enumerable.ExtendedFacing;
-import it.unimi.dsi.fastutil.objects.Object2ObjectOpenHashMap;
-import net.minecraft.core.BlockPos;
 import net.minecraft.server.level.ServerPlayer;
 import net.minecraft.world.entity.player.Player;
 import net.minecraft.world.item.ItemStack;
 import net.minecraft.world.level.Level;
+import org.jetbrains.annotations.Nullable;
 
 /**
  * This is the structure definition of your multi. You will have one of these for each multi.
@@ -27,7 +24,9 @@ import net.minecraft.world.level.Level;
  * {@code getStructureDefinition()}. You can use a {@link ClassValue ClassValue&lt;IStructureDefinition&lt;?>>} if you
  * have a template for subclass. You can also use {@link StructureUtility#defer(Function) defer()} or its overloads for
  * simpler cases, but it is slightly less performant as it will allocate new objects on each structure check, whereas
- * {@link ClassValue} will allocate once and cache it onwards.
+ * {@link ClassValue} will allocate once and cache it onwards. If the structure only varies by a few properties, e.g.
+ * tier or mode, {@link StructureUtility#deferCached(Function, Function) deferCached()} will allocate once per
+ * distinct value of those properties instead.
  * <p>
  * <h2>Constructing</h2>
  * <p>
@@ -73,6 +72,34 @@ public interface IStructureDefinition<T> {
 
     boolean isContainedInStructure(String name, int offsetA, int offsetB, int offsetC);
 
+    /**
+     * Get the positions covered by given structure piece, e.g. to query its bounding box.
+     *
+     * @param name same name as for other methods here
+     * @return the occupied space, or null if this definition does not keep track of it
+     * @throws java.util.NoSuchElementException if the given structure piece is not found
+     */
+    @Nullable
+    default OccupiedSpace getOccupiedSpace(String name) {
+        return null;
+    }
+
+    /**
+     * Used internally
+     * <p>
+     * Get the given structure piece compiled for given orientation. Implementations are encouraged to cache the
+     * returned plan, as it is requested on every check, hint and build.
+     *
+     * @param name   same name as for other methods here
+     * @param facing the current structure's orientation.
+     * @return compiled plan
+     * @throws java.util.NoSuchElementException if the given structure piece is not found and
+     *                                          {@link #getStructureFor(String)} throws it
+     */
+    default StructurePlan<T> getPlanFor(String name, ExtendedFacing facing) {
+        return StructurePlan.compile(getStructureFor(name), facing);
+    }
+
     /**
      * Run a structure check.
      *
@@ -88,14 +115,125 @@ public interface IStructureDefinition<T> {
      * @param basePositionC       see class javadoc
      * @param forceCheckAllBlocks check all location even if chunk not currently loaded.
      * @return true if successful, false otherwise
+     * @see StructureIndex
      */
     default boolean check(T object, String piece, Level world, ExtendedFacing extendedFacing, int basePositionX,
                           int basePositionY, int basePositionZ, int basePositionA, int basePositionB, int basePositionC,
                           boolean forceCheckAllBlocks) {
-        return iterate(
+        StructurePlan<T> plan = getPlanFor(piece, extendedFacing);
+        boolean formed = check(
+                object,
+                plan,
+                world,
+                basePositionX,
+                basePositionY,
+                basePositionZ,
+                basePositionA,
+                basePositionB,
+                basePositionC,
+                forceCheckAllBlocks,
+                false);
+        StructureIndex.update(
+                object,
+                this,
+                piece,
+                plan,
+                world,
+                basePositionX,
+                basePositionY,
+                basePositionZ,
+                basePositionA,
+                basePositionB,
+                basePositionC,
+                formed);
+        return formed;
+    }
+
+    /**
+     * Run a structure check, but stop at the first element that fails.
+     * <p>
+     * This is cheaper than {@link #check(Object, String, Level, ExtendedFacing, int, int, int, int, int, int, boolean)
+     * check()} when the structure is likely to be incomplete, as work done is proportional to the position of the first
+     * error instead of the size of the structure. In exchange, elements after the first error are never visited, so
+     * {@link IStructureElement#onStructureFail(Object, Level, int, int, int)} is only called on elements that were
+     * actually visited. Do not use this if your elements rely on seeing every block, e.g. to count casings or to
+     * collect hatches for error reporting.
+     *
+     * @param object              context object. usually multiblock controller.
+     * @param piece               the structure piece's string identifier.
+     * @param world               the world object this check takes place in.
+     * @param extendedFacing      the current structure's orientation.
+     * @param basePositionX       X location of the structure
+     * @param basePositionY       Y location of the structure
+     * @param basePositionZ       Z location of the structure
+     * @param basePositionA       see class javadoc
+     * @param basePositionB       see class javadoc
+     * @param basePositionC       see class javadoc
+     * @param forceCheckAllBlocks check all location even if chunk not currently loaded.
+     * @return true if successful, false otherwise
+     */
+    default boolean checkFailFast(T object, String piece, Level world, ExtendedFacing extendedFacing,
+                                  int basePositionX, int basePositionY, int basePositionZ, int basePositionA,
+                                  int basePositionB, int basePositionC, boolean forceCheckAllBlocks) {
+        StructurePlan<T> plan = getPlanFor(piece, extendedFacing);
+        boolean formed = check(
+                object,
+                plan,
+                world,
+                basePositionX,
+                basePositionY,
+                basePositionZ,
+                basePositionA,
+                basePositionB,
+                basePositionC,
+                forceCheckAllBlocks,
+                true);
+        StructureIndex.update(
                 object,
-                null,
-                getStructureFor(piece),
+                this,
+                piece,
+                plan,
+                world,
+                basePositionX,
+                basePositionY,
+                basePositionZ,
+                basePositionA,
+                basePositionB,
+                basePositionC,
+                formed);
+        return formed;
+    }
+
+    /**
+     * Run a structure check, or return the result of the last check at the same place if none of the blocks around the
+     * structure changed since.
+     * <p>
+     * This only helps structures made entirely of {@linkplain IStructureElement#isSnapshotSafe() snapshot safe}
+     * elements; other structures are always checked in full. When the cached result is returned no element is
+     * visited, so {@link IStructureElement#onStructureSuccess(Object, Level, int, int, int)} and
+     * {@link IStructureElement#onStructureFail(Object, Level, int, int, int)} are not called.
+     *
+     * @param object              context object. usually multiblock controller.
+     * @param piece               the structure piece's string identifier.
+     * @param world               the world object this check takes place in.
+     * @param extendedFacing      the current structure's orientation.
+     * @param basePositionX       X location of the structure
+     * @param basePositionY       Y location of the structure
+     * @param basePositionZ       Z location of the structure
+     * @param basePositionA       see class javadoc
+     * @param basePositionB       see class javadoc
+     * @param basePositionC       see class javadoc
+     * @param forceCheckAllBlocks check all location even if chunk not currently loaded.
+     * @return true if successful, false otherwise
+     * @see StructureCheckCache
+     */
+    default boolean checkCached(T object, String piece, Level world, ExtendedFacing extendedFacing,
+                                int basePositionX, int basePositionY, int basePositionZ, int basePositionA,
+                                int basePositionB, int basePositionC, boolean forceCheckAllBlocks) {
+        return StructureCheckCache.check(
+                this,
+                object,
+                piece,
                 world,
                 extendedFacing,
                 basePositionX,
@@ -104,7 +242,6 @@ public interface IStructureDefinition<T> {
                 basePositionA,
                 basePositionB,
                 basePositionC,
-                false,
                 forceCheckAllBlocks);
     }
 
@@ -129,9 +266,8 @@ public interface IStructureDefinition<T> {
         return iterate(
                 object,
                 trigger,
-                getStructureFor(piece),
+                getPlanFor(piece, extendedFacing),
                 world,
-                extendedFacing,
                 basePositionX,
                 basePositionY,
                 basePositionZ,
@@ -165,9 +301,8 @@ public interface IStructureDefinition<T> {
         return iterate(
                 object,
                 trigger,
-                getStructureFor(piece),
+                getPlanFor(piece, extendedFacing),
                 world,
-                extendedFacing,
                 basePositionX,
                 basePositionY,
                 basePositionZ,
@@ -205,9 +340,8 @@ public interface IStructureDefinition<T> {
         return iterate(
                 object,
                 trigger,
-                getStructureFor(piece),
+                getPlanFor(piece, extendedFacing),
                 world,
-                extendedFacing,
                 basePositionX,
                 basePositionY,
                 basePositionZ,
@@ -272,6 +406,10 @@ public interface IStructureDefinition<T> {
 
     /**
      * Cause a survival build.
+     * <p>
+     * The build stops once the element budget is used up, and the next build by the same actor on the same context
+     * object resumes where this one stopped, as long as piece, facing and base position are unchanged and it happens
+     * within a few minutes. Elements before that point are still visited afterwards, so nothing is left out.
      *
      * @param object         context object. usually multiblock controller.
      * @param trigger        The trigger item that contains channel data.
@@ -306,9 +444,43 @@ public interface IStructureDefinition<T> {
                 extendedFacing,
                 new int[] { basePositionA, basePositionB, basePositionC },
                 check);
-        StructureUtility.iterateV2(
-                getStructureFor(piece),
-                world,
+        StructurePlan<T> plan = getPlanFor(piece, extendedFacing);
+        Player actor = env.getActor();
+        int start = SurvivalBuildCursors.get(
+                object,
+                actor,
+                this,
+                piece,
+                extendedFacing,
+                basePositionX,
+                basePositionY,
+                basePositionZ,
+                basePositionA,
+                basePositionB,
+                basePositionC);
+        int stop;
+        BlockPlacementBatch.begin(world);
+        try {
+            stop = StructureUtility.iterateV2(
+                    plan,
+                    world,
+                    basePositionX,
+                    basePositionY,
+                    basePositionZ,
+                    basePositionA,
+                    basePositionB,
+                    basePositionC,
+                    walker,
+                    "survivalBuild",
+                    start);
+        } finally {
+            BlockPlacementBatch.end();
+        }
+        SurvivalBuildCursors.update(
+                object,
+                actor,
+                this,
+                piece,
                 extendedFacing,
                 basePositionX,
                 basePositionY,
@@ -316,11 +488,71 @@ public interface IStructureDefinition<T> {
                 basePositionA,
                 basePositionB,
                 basePositionC,
-                walker,
-                "survivalBuild");
+                stop);
         return walker.getBuilt();
     }
 
+    /**
+     * Cause a survival build in two passes. The first pass walks the piece without touching the world, and adds up the
+     * items needed by every element that needs work. If any of these items are missing, they are reported to the
+     * actor and nothing is placed. Otherwise the second pass places all collected elements in one go.
+     * <p>
+     * Only elements that are {@linkplain IStructureElement#isSnapshotSafe() snapshot safe} and report their
+     * {@linkplain IStructureElement#getBlocksToPlace blocks to place} as item stacks can be planned. Other elements are
+     * built in the second pass as in {@link #survivalBuild(Object, ItemStack, String, Level, ExtendedFacing, int, int,
+     * int, int, int, int, int, ISurvivalBuildEnvironment, boolean)}, and might still run out of items.
+     *
+     * @param object         context object. usually multiblock controller.
+     * @param trigger        The trigger item that contains channel data.
+     * @param piece          the structure piece's string identifier.
+     * @param world          the world object this check takes place in.
+     * @param extendedFacing the current structure's orientation.
+     * @param basePositionX  X location of the structure
+     * @param basePositionY  Y location of the structure
+     * @param basePositionZ  Z location of the structure
+     * @param basePositionA  see class javadoc
+     * @param basePositionB  see class javadoc
+     * @param basePositionC  see class javadoc
+     * @param elementBudget  build up to this many elements
+     * @param env            build environment.
+     * @param check          same as for survivalBuild
+     * @return number of elements built, -1 if structure done, or -3 if items are missing. Nothing is built in the
+     *         latter case.
+     */
+    default int survivalBuildPlanned(T object, ItemStack trigger, String piece, Level world,
+            ExtendedFacing extendedFacing, int basePositionX, int basePositionY, int basePositionZ, int basePositionA,
+            int basePositionB, int basePositionC, int elementBudget, ISurvivalBuildEnvironment env, boolean check) {
+        SurvivalBuildPlanner<T> planner = new SurvivalBuildPlanner<>(
+                object,
+                trigger,
+                elementBudget,
+                env,
+                c -> env.getActor().sendMessage(c, env.getActor().getUUID()),
+                this,
+                piece,
+                extendedFacing,
+                new int[] { basePositionA, basePositionB, basePositionC },
+                check);
+        StructureUtility.iterateV2(
+                getPlanFor(piece, extendedFacing),
+                world,
+                basePositionX,
+                basePositionY,
+                basePositionZ,
+                basePositionA,
+                basePositionB,
+                basePositionC,
+                planner,
+                "survivalBuildPlanned",
+                0);
+        BlockPlacementBatch.begin(world);
+        try {
+            return planner.build(world);
+        } finally {
+            BlockPlacementBatch.end();
+        }
+    }
+
     /**
      * Low level utility.
      *
@@ -345,50 +577,67 @@ public interface IStructureDefinition<T> {
     static <T> boolean iterate(T object, ItemStack trigger, IStructureElement<T>[] elements, Level world,
             ExtendedFacing extendedFacing, int basePositionX, int basePositionY, int basePositionZ, int basePositionA,
             int basePositionB, int basePositionC, boolean hintsOnly, Boolean checkBlocksIfNotNullForceCheckAllIfTrue) {
-        if (!world.isClientSide && hintsOnly) {
-            return false;
-        }
-
-        if (checkBlocksIfNotNullForceCheckAllIfTrue != null) {
-            Map<BlockPos, IStructureElement<T>> structurePositions = new Object2ObjectOpenHashMap<>();
-            Function<IStructureWalker<T>, IStructureWalker<T>> walkerFunction = pred -> checkBlocksIfNotNullForceCheckAllIfTrue ? pred : skipBlockUnloaded(pred);
-            String typeAddition = checkBlocksIfNotNullForceCheckAllIfTrue ? "" : " force";
-            boolean success = StructureUtility.iterateV2(
-                elements,
+        return iterate(
+                object,
+                trigger,
+                StructurePlan.compile(elements, extendedFacing),
                 world,
-                extendedFacing,
                 basePositionX,
                 basePositionY,
                 basePositionZ,
                 basePositionA,
                 basePositionB,
                 basePositionC,
-                walkerFunction.apply((e, w, x, y, z, a, b, c) -> {
-                    boolean check = e.check(object, w, x, y, z);
-                    structurePositions.put(new BlockPos(x, y, z), e);
-                    return check;
-                }),
-                "check" + typeAddition);
-            if (success) {
-                structurePositions.forEach((b, e) -> {
-                    e.onStructureSuccess(object, world, b.getX(), b.getY(), b.getZ());
-                });
-                if (StructureLibAPI.isDebugEnabled()) {
-                    StructureLib.LOGGER
-                            .info("Multi [" + basePositionX + ", " + basePositionY + ", " + basePositionZ + "] pass");
-                }
-            } else {
-                structurePositions.forEach((b, e) -> {
-                    e.onStructureFail(object, world, b.getX(), b.getY(), b.getZ());
-                });
-            }
-            return success;
+                hintsOnly,
+                checkBlocksIfNotNullForceCheckAllIfTrue);
+    }
+
+    /**
+     * Low level utility.
+     *
+     * @param object                                  context object. usually multiblock controller.
+     * @param trigger                                 The trigger item that contains channel data.
+     * @param plan                                    the structure piece, compiled for the current structure's
+     *                                                orientation.
+     * @param world                                   the world object this check takes place in.
+     * @param basePositionX                           X location of the structure
+     * @param basePositionY                           Y location of the structure
+     * @param basePositionZ                           Z location of the structure
+     * @param basePositionA                           see class javadoc
+     * @param basePositionB                           see class javadoc
+     * @param basePositionC                           see class javadoc
+     * @param hintsOnly                               whether to spawn hints or do creative build. no effect if
+     *                                                {@code checkBlocksIfNotNullForceCheckAllIfTrue} is not null.
+     * @param checkBlocksIfNotNullForceCheckAllIfTrue creative build or spawn hints if null. Force check not loaded
+     *                                                chunk if true. Check only loaded chunk is false.
+     * @return true if iteration completed successfully.
+     * @param <T> type of context object.
+     */
+    static <T> boolean iterate(T object, ItemStack trigger, StructurePlan<T> plan, Level world, int basePositionX,
+            int basePositionY, int basePositionZ, int basePositionA, int basePositionB, int basePositionC,
+            boolean hintsOnly, Boolean checkBlocksIfNotNullForceCheckAllIfTrue) {
+        if (!world.isClientSide && hintsOnly) {
+            return false;
+        }
+
+        if (checkBlocksIfNotNullForceCheckAllIfTrue != null) {
+            return check(
+                    object,
+                    plan,
+                    world,
+                    basePositionX,
+                    basePositionY,
+                    basePositionZ,
+                    basePositionA,
+                    basePositionB,
+                    basePositionC,
+                    checkBlocksIfNotNullForceCheckAllIfTrue,
+                    false);
         } else {
             if (hintsOnly) {
                 StructureUtility.iterateV2(
-                        elements,
+                        plan,
                         world,
-                        extendedFacing,
                         basePositionX,
                         basePositionY,
                         basePositionZ,
@@ -401,26 +650,80 @@ public interface IStructureDefinition<T> {
                         }),
                         "spawnHint");
             } else {
-                StructureUtility.iterateV2(
-                        elements,
-                        world,
-                        extendedFacing,
-                        basePositionX,
-                        basePositionY,
-                        basePositionZ,
-                        basePositionA,
-                        basePositionB,
-                        basePositionC,
-                        ignoreBlockUnloaded((e, w, x, y, z, a, b, c) -> {
-                            e.placeBlock(object, world, x, y, z, trigger);
-                            return true;
-                        }),
-                        "placeBlock");
+                BlockPlacementBatch.begin(world);
+                try {
+                    StructureUtility.iterateV2(
+                            plan,
+                            world,
+                            basePositionX,
+                            basePositionY,
+                            basePositionZ,
+                            basePositionA,
+                            basePositionB,
+                            basePositionC,
+                            ignoreBlockUnloaded((e, w, x, y, z, a, b, c) -> {
+                                e.placeBlock(object, world, x, y, z, trigger);
+                                return true;
+                            }),
+                            "placeBlock");
+                } finally {
+                    BlockPlacementBatch.end();
+                }
             }
         }
         return true;
     }
 
+    /**
+     * Low level utility.
+     *
+     * @param object              context object. usually multiblock controller.
+     * @param plan                the structure piece, compiled for the current structure's orientation.
+     * @param world               the world object this check takes place in.
+     * @param basePositionX       X location of the structure
+     * @param basePositionY       Y location of the structure
+     * @param basePositionZ       Z location of the structure
+     * @param basePositionA       see class javadoc
+     * @param basePositionB       see class javadoc
+     * @param basePositionC       see class javadoc
+     * @param forceCheckAllBlocks check all location even if chunk not currently loaded.
+     * @param failFast            stop at the first failing element.
+     * @return true if successful, false otherwise
+     * @param <T> type of context object.
+     */
+    static <T> boolean check(T object, StructurePlan<T> plan, Level world, int basePositionX, int basePositionY,
+            int basePositionZ, int basePositionA, int basePositionB, int basePositionC, boolean forceCheckAllBlocks,
+            boolean failFast) {
+        CheckBuffer buffer = CheckBuffer.acquire();
+        try {
+            boolean success = StructureUtility.checkV2(
+                    plan,
+                    object,
+                    world,
+                    basePositionX,
+                    basePositionY,
+                    basePositionZ,
+                    basePositionA,
+                    basePositionB,
+                    basePositionC,
+                    forceCheckAllBlocks,
+                    failFast,
+                    buffer);
+            if (success) {
+                buffer.replaySuccess(object, world);
+                if (StructureLibAPI.isDebugEnabled()) {
+                    StructureLib.LOGGER
+                            .info("Multi [" + basePositionX + ", " + basePositionY + ", " + basePositionZ + "] pass");
+                }
+            } else {
+                buffer.replayFail(object, world);
+            }
+            return success;
+        } finally {
+            buffer.release();
+        }
+    }
+
     /**
      * Create a new instance of builder.
      *
@@ -11,6 +11,7 @@ import net.minecraft.world.item.Item;
 import net.minecraft.world.item.ItemStack;
 import net.minecraft.world.level.Level;
 import net.minecraft.world.level.block.Block;
+import net.minecraft.world.level.block.state.BlockState;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -30,6 +31,52 @@ public interface IStructureElement<T> {
 
     boolean check(T t, Level world, int x, int y, int z);
 
+    /**
+     * Same as {@link #check(Object, Level, int, int, int)}, but the block at the position being checked might have
+     * already been read from world. The structure walker calls this overload, so override it if your element looks at
+     * the block state or block entity. Elements that combine other elements should pass the same info downstream.
+     * <p>
+     * Defaults to calling {@link #check(Object, Level, int, int, int)}.
+     */
+    default boolean check(T t, StructureBlockInfo info) {
+        return check(t, info.getWorld(), info.getX(), info.getY(), info.getZ());
+    }
+
+    /**
+     * Whether {@link #check(Object, StructureBlockInfo)} can run off the server thread against a snapshot of the world,
+     * as done by {@link ParallelStructureCheck}. A snapshot safe element must only look at the block state of the
+     * position being checked, and must not modify the context object, the world or any other shared state. Block
+     * entities are not available in a snapshot.
+     * <p>
+     * Structures containing any element that is not snapshot safe are checked on the server thread instead. Defaults to
+     * false.
+     */
+    default boolean isSnapshotSafe() {
+        return false;
+    }
+
+    /**
+     * Block states this element could possibly accept, if known up front. The structure walker uses this to reject a
+     * structure by looking at the palettes of the chunk sections it covers, without visiting individual positions.
+     * <p>
+     * This must be a necessary condition: {@link #check(Object, StructureBlockInfo)} must never pass for a block state
+     * rejected by this predicate. It may accept more than the element does. Defaults to null, i.e. unknown.
+     */
+    @Nullable
+    default Predicate<BlockState> getAcceptedStates() {
+        return null;
+    }
+
+    /**
+     * Whether this element is a pure block state match, i.e. {@link #check(Object, StructureBlockInfo)} passes if and
+     * only if {@link #getAcceptedStates()} accepts the block state at the position, and does nothing else. The
+     * structure walker tests such elements against a {@link BlockStateSet} instead of calling check, and chains made
+     * only of such elements are tested as a single set. Defaults to false.
+     */
+    default boolean isStateMatcher() {
+        return false;
+    }
+
     boolean spawnHint(T t, Level world, int x, int y, int z, ItemStack trigger);
 
     boolean placeBlock(T t, Level world, int x, int y, int z, ItemStack trigger);
@@ -190,6 +237,26 @@ public interface IStructureElement<T> {
                 return IStructureElement.this.check(t, world, x, y, z);
             }
 
+            @Override
+            public boolean check(T t, StructureBlockInfo info) {
+                return IStructureElement.this.check(t, info);
+            }
+
+            @Override
+            public boolean isSnapshotSafe() {
+                return IStructureElement.this.isSnapshotSafe();
+            }
+
+            @Override
+            public Predicate<BlockState> getAcceptedStates() {
+                return IStructureElement.this.getAcceptedStates();
+            }
+
+            @Override
+            public boolean isStateMatcher() {
+                return IStructureElement.this.isStateMatcher();
+            }
+
             @Override
             public boolean spawnHint(T t, Level world, int x, int y, int z, ItemStack trigger) {
                 return IStructureElement.this.spawnHint(t, world, x, y, z, trigger);
@@ -5,6 +5,7 @@ import net.minecraft.network.chat.Component;
 import net.minecraft.server.level.ServerPlayer;
 import net.minecraft.world.item.ItemStack;
 import net.minecraft.world.level.Level;
+import net.minecraft.world.level.block.state.BlockState;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.ArrayList;
@@ -21,14 +22,52 @@ public interface IStructureElementChain<T> extends IStructureElement<T> {
 
     @Override
     default boolean check(T t, Level world, int x, int y, int z) {
+        return check(t, new StructureBlockInfo(world, x, y, z));
+    }
+
+    @Override
+    default boolean check(T t, StructureBlockInfo info) {
         for (IStructureElement<T> fallback : fallbacks()) {
-            if (fallback.check(t, world, x, y, z)) {
+            if (fallback.check(t, info)) {
                 return true;
             }
         }
         return false;
     }
 
+    @Override
+    default boolean isSnapshotSafe() {
+        for (IStructureElement<T> fallback : fallbacks()) {
+            if (!fallback.isSnapshotSafe()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Nullable
+    @Override
+    default Predicate<BlockState> getAcceptedStates() {
+        Predicate<BlockState> predicate = null;
+        for (IStructureElement<T> fallback : fallbacks()) {
+            Predicate<BlockState> accepted = fallback.getAcceptedStates();
+            // a fallback that might accept anything makes the whole chain accept anything
+            if (accepted == null) return null;
+            predicate = predicate == null ? accepted : predicate.or(accepted);
+        }
+        return predicate;
+    }
+
+    @Override
+    default boolean isStateMatcher() {
+        for (IStructureElement<T> fallback : fallbacks()) {
+            if (!fallback.isStateMatcher()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     @Override
     default boolean spawnHint(T t, Level world, int x, int y, int z, ItemStack trigger) {
         for (IStructureElement<T> fallback : fallbacks()) {
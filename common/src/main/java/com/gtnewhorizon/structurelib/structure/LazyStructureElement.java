@@ -11,21 +11,34 @@ import java.util.function.Function;
 
 
 
+/**
+ * Creates the downstream element on first use, and reuses it from then on.
+ * <p>
+ * Thread safe. If several threads get here first at the same time, only one of them creates the element, and the
+ * others wait for it.
+ */
 class LazyStructureElement<T> implements IStructureElementDeferred<T> {
 
     private Function<T, IStructureElement<T>> to;
-    private IStructureElement<T> elem;
+    private volatile IStructureElement<T> elem;
 
     public LazyStructureElement(Function<T, IStructureElement<T>> to) {
         this.to = to;
     }
 
     private IStructureElement<T> get(T t) {
-        if (to != null) {
-            elem = to.apply(t);
-            to = null;
+        IStructureElement<T> elem = this.elem;
+        if (elem != null) return elem;
+        synchronized (this) {
+            elem = this.elem;
+            if (elem == null) {
+                elem = to.apply(t);
+                if (elem == null) throw new IllegalStateException("lazy element supplier returned null");
+                this.elem = elem;
+                to = null;
+            }
+            return elem;
         }
-        return elem;
     }
 
     @Override
@@ -33,6 +46,11 @@ class LazyStructureElement<T> implements IStructureElementDeferred<T> {
         return get(t).check(t, world, x, y, z);
     }
 
+    @Override
+    public boolean check(T t, StructureBlockInfo info) {
+        return get(t).check(t, info);
+    }
+
     @Override
     public boolean placeBlock(T t, Level world, int x, int y, int z, ItemStack trigger) {
         return get(t).placeBlock(t, world, x, y, z, trigger);
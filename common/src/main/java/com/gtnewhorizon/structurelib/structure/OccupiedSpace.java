@@ -0,0 +1,135 @@
+package com.gtnewhorizon.structurelib.structure;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+
+/**
+ * The positions covered by a structure piece, in ABC coordinates relative to the piece origin, i.e. the same
+ * coordinates as {@link IStructureDefinition#isContainedInStructure(String, int, int, int)} takes.
+ * <p>
+ * Stored as the bounding box of all positions plus a bitset over that box, so that lookups are a bound check and a bit
+ * test. Immutable.
+ */
+public final class OccupiedSpace {
+
+    private static final OccupiedSpace EMPTY = new OccupiedSpace(0, 0, 0, -1, -1, -1, new long[0], 0);
+
+    private final int minA, minB, minC, maxA, maxB, maxC;
+    private final int sizeA, sizeB;
+    /**
+     * Bit {@code ((c - minC) * sizeB + (b - minB)) * sizeA + (a - minA)} is set if (a, b, c) is occupied.
+     */
+    private final long[] bits;
+    private final int size;
+
+    private OccupiedSpace(int minA, int minB, int minC, int maxA, int maxB, int maxC, long[] bits, int size) {
+        this.minA = minA;
+        this.minB = minB;
+        this.minC = minC;
+        this.maxA = maxA;
+        this.maxB = maxB;
+        this.maxC = maxC;
+        this.sizeA = maxA - minA + 1;
+        this.sizeB = maxB - minB + 1;
+        this.bits = bits;
+        this.size = size;
+    }
+
+    /**
+     * @return true if given position is occupied
+     */
+    public boolean contains(int a, int b, int c) {
+        if (a < minA || a > maxA || b < minB || b > maxB || c < minC || c > maxC) return false;
+        int index = ((c - minC) * sizeB + (b - minB)) * sizeA + (a - minA);
+        return (bits[index >>> 6] & 1L << index) != 0;
+    }
+
+    /**
+     * @return true if given position lies within the bounding box. Does not mean it is occupied.
+     */
+    public boolean isInBoundingBox(int a, int b, int c) {
+        return a >= minA && a <= maxA && b >= minB && b <= maxB && c >= minC && c <= maxC;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return number of occupied positions
+     */
+    public int size() {
+        return size;
+    }
+
+    // region bounding box. undefined if empty
+
+    public int getMinA() {
+        return minA;
+    }
+
+    public int getMinB() {
+        return minB;
+    }
+
+    public int getMinC() {
+        return minC;
+    }
+
+    public int getMaxA() {
+        return maxA;
+    }
+
+    public int getMaxB() {
+        return maxB;
+    }
+
+    public int getMaxC() {
+        return maxC;
+    }
+
+    // endregion
+
+    /**
+     * Collects positions, then packs them once done. Duplicates are fine.
+     */
+    static final class Builder {
+
+        private final IntArrayList positions = new IntArrayList();
+
+        void add(int a, int b, int c) {
+            positions.add(a);
+            positions.add(b);
+            positions.add(c);
+        }
+
+        OccupiedSpace build() {
+            if (positions.isEmpty()) return EMPTY;
+            int minA = Integer.MAX_VALUE, minB = Integer.MAX_VALUE, minC = Integer.MAX_VALUE;
+            int maxA = Integer.MIN_VALUE, maxB = Integer.MIN_VALUE, maxC = Integer.MIN_VALUE;
+            for (int i = 0; i < positions.size(); i += 3) {
+                int a = positions.getInt(i), b = positions.getInt(i + 1), c = positions.getInt(i + 2);
+                minA = Math.min(minA, a);
+                minB = Math.min(minB, b);
+                minC = Math.min(minC, c);
+                maxA = Math.max(maxA, a);
+                maxB = Math.max(maxB, b);
+                maxC = Math.max(maxC, c);
+            }
+            int sizeA = maxA - minA + 1, sizeB = maxB - minB + 1;
+            long volume = (long) sizeA * sizeB * (maxC - minC + 1);
+            if (volume > Integer.MAX_VALUE) throw new IllegalArgumentException("structure piece too large");
+            long[] bits = new long[(int) ((volume + 63) >>> 6)];
+            int size = 0;
+            for (int i = 0; i < positions.size(); i += 3) {
+                int index = ((positions.getInt(i + 2) - minC) * sizeB + (positions.getInt(i + 1) - minB)) * sizeA
+                        + (positions.getInt(i) - minA);
+                long bit = 1L << index;
+                if ((bits[index >>> 6] & bit) == 0) {
+                    bits[index >>> 6] |= bit;
+                    size++;
+                }
+            }
+            return new OccupiedSpace(minA, minB, minC, maxA, maxB, maxC, bits, size);
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.gtnewhorizon.structurelib.structure;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import com.gtnewhorizon.structurelib.StructureLib;
+import net.minecraft.world.level.Level;
+
+/**
+ * Check many structures at once, spreading the work over the common {@link ForkJoinPool}.
+ * <p>
+ * The chunk sections touched by the batch are copied into a {@link ChunkSnapshot} on the calling thread. The element
+ * checks then run in parallel against this snapshot, and the {@link IStructureElement#onStructureSuccess} and
+ * {@link IStructureElement#onStructureFail} callbacks are replayed on the calling thread afterwards, in request order.
+ * <p>
+ * Only structures made entirely of {@linkplain IStructureElement#isSnapshotSafe() snapshot safe} elements are
+ * checked in parallel. Everything else, e.g. structures with tile adders, is checked on the calling thread the usual
+ * way. Overrides of {@link IStructureDefinition#check} are bypassed for snapshot safe structures.
+ */
+public final class ParallelStructureCheck {
+
+    /**
+     * Below this many snapshot safe requests, taking snapshots costs more than is saved.
+     */
+    private static final int MIN_PARALLEL_REQUESTS = 4;
+
+    private ParallelStructureCheck() {}
+
+    /**
+     * Run all given structure checks. Must be called on the server thread.
+     *
+     * @param requests checks to run
+     * @return result of each check, in iteration order of requests
+     */
+    public static boolean[] checkAll(Collection<? extends CheckRequest<?>> requests) {
+        CheckRequest<?>[] batch = requests.toArray(new CheckRequest<?>[0]);
+        boolean[] parallel = new boolean[batch.length];
+        int count = 0;
+        for (int i = 0; i < batch.length; i++) {
+            if (batch[i].prepare()) {
+                parallel[i] = true;
+                count++;
+            }
+        }
+
+        if (count >= MIN_PARALLEL_REQUESTS) {
+            runParallel(batch, parallel, count);
+        } else {
+            Arrays.fill(parallel, false);
+        }
+
+        boolean[] results = new boolean[batch.length];
+        for (int i = 0; i < batch.length; i++) {
+            results[i] = parallel[i] ? batch[i].apply() : batch[i].checkSerially();
+        }
+        return results;
+    }
+
+    /**
+     * Evaluate all requests marked in parallel. Requests whose evaluation failed are unmarked, so that they get checked
+     * serially instead.
+     */
+    private static void runParallel(CheckRequest<?>[] batch, boolean[] parallel, int count) {
+        Map<Level, ChunkSnapshot> snapshots = new IdentityHashMap<>();
+        List<Callable<Void>> tasks = new ArrayList<>(count);
+        for (int i = 0; i < batch.length; i++) {
+            if (!parallel[i]) continue;
+            CheckRequest<?> request = batch[i];
+            ChunkSnapshot snapshot = snapshots.computeIfAbsent(request.getWorld(), ChunkSnapshot::new);
+            snapshot.capture(request.getPositions());
+            tasks.add(() -> {
+                request.evaluate(snapshot);
+                return null;
+            });
+        }
+
+        List<Future<Void>> futures = ForkJoinPool.commonPool().invokeAll(tasks);
+        for (int i = 0, j = 0; i < batch.length; i++) {
+            if (!parallel[i]) continue;
+            try {
+                futures.get(j++).get();
+            } catch (ExecutionException e) {
+                StructureLib.LOGGER
+                        .error("Parallel check of {} failed, checking on server thread", batch[i], e.getCause());
+                parallel[i] = false;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                parallel[i] = false;
+            }
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package com.gtnewhorizon.structurelib.structure;
+
+import java.util.function.Predicate;
+
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.SectionPos;
+import net.minecraft.world.level.Level;
+import net.minecraft.world.level.block.Blocks;
+import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.level.chunk.LevelChunk;
+import net.minecraft.world.level.chunk.PalettedContainer;
+
+/**
+ * Fast block access for structure elements.
+ * <p>
+ * While a structure is being iterated, the chunk sections it touches are resolved once and kept in a small per thread
+ * cache, so reading a block state is a cache hit plus a palette lookup instead of a chunk lookup, a section lookup and
+ * a {@link BlockPos} allocation. Outside a structure iteration, or when called with a different world than the one
+ * being iterated, this falls back to {@link Level#getBlockState(BlockPos)}.
+ * <p>
+ * Custom {@link IStructureElement} implementation should use {@link #getBlockState(Level, int, int, int)} in their
+ * {@link IStructureElement#check(Object, Level, int, int, int)} to benefit from this.
+ * <p>
+ * During a {@linkplain ParallelStructureCheck parallel check} blocks are read from a {@link ChunkSnapshot} instead,
+ * and blocks not covered by the snapshot read as void air.
+ */
+public final class StructureBlockAccess {
+
+    private static final int CACHE_SIZE = 8;
+    private static final ThreadLocal<StructureBlockAccess> CURRENT = new ThreadLocal<>();
+    private static final ThreadLocal<StructureBlockAccess> ROOT = ThreadLocal.withInitial(StructureBlockAccess::new);
+
+    private final long[] keys = new long[CACHE_SIZE];
+    @SuppressWarnings("unchecked")
+    private final PalettedContainer<BlockState>[] sections = new PalettedContainer[CACHE_SIZE];
+    private int cached, next, last;
+    private Level world;
+    /**
+     * Build height of world, inclusive and exclusive respectively.
+     */
+    private int minY, maxY;
+    /**
+     * If not null, blocks are read from here instead of from world.
+     */
+    private ChunkSnapshot snapshot;
+    /**
+     * The access of the enclosing iteration, if any. Iteration can nest, e.g. when an element checks another
+     * structure.
+     */
+    private StructureBlockAccess parent;
+    private StructureBlockAccess child;
+
+    private StructureBlockAccess() {}
+
+    /**
+     * Start a structure iteration on current thread. Must be paired with {@link #end()} in a finally block.
+     */
+    static void begin(Level world) {
+        StructureBlockAccess current = CURRENT.get();
+        // an iteration nested in a snapshot iteration must not touch the live world either
+        ChunkSnapshot snapshot = current != null && current.snapshot != null && current.snapshot.world == world
+                ? current.snapshot
+                : null;
+        StructureBlockAccess access = push(current);
+        access.snapshot = snapshot;
+        if (snapshot != null) {
+            access.world = world;
+            access.minY = snapshot.minY;
+            access.maxY = snapshot.maxY;
+        } else {
+            // debug worlds do not store their blocks in sections
+            access.world = world.isDebug() ? null : world;
+            access.minY = world.getMinBuildHeight();
+            access.maxY = world.getMaxBuildHeight();
+        }
+    }
+
+    /**
+     * Start a structure iteration on current thread that reads blocks from given snapshot. Must be paired with
+     * {@link #end()} in a finally block.
+     */
+    static void begin(ChunkSnapshot snapshot) {
+        StructureBlockAccess access = push(CURRENT.get());
+        access.world = snapshot.world;
+        access.snapshot = snapshot;
+        access.minY = snapshot.minY;
+        access.maxY = snapshot.maxY;
+    }
+
+    private static StructureBlockAccess push(StructureBlockAccess current) {
+        StructureBlockAccess access;
+        if (current == null) {
+            access = ROOT.get();
+        } else {
+            if (current.child == null) {
+                current.child = new StructureBlockAccess();
+                current.child.parent = current;
+            }
+            access = current.child;
+        }
+        CURRENT.set(access);
+        return access;
+    }
+
+    static void end() {
+        StructureBlockAccess access = CURRENT.get();
+        if (access == null) throw new IllegalStateException("not iterating");
+        // do not keep chunks alive longer than necessary
+        for (int i = 0; i < access.cached; i++) access.sections[i] = null;
+        access.cached = access.next = access.last = 0;
+        access.world = null;
+        access.snapshot = null;
+        CURRENT.set(access.parent);
+    }
+
+    /**
+     * Same as {@link Level#getBlockState(BlockPos)}, but does not allocate and is much faster while a structure is
+     * being iterated.
+     */
+    public static BlockState getBlockState(Level world, int x, int y, int z) {
+        StructureBlockAccess access = CURRENT.get();
+        if (access == null || access.world != world) return world.getBlockState(new BlockPos(x, y, z));
+        if (access.isOutsideBuildHeight(y)) return Blocks.VOID_AIR.defaultBlockState();
+        PalettedContainer<BlockState> section = access.getSection(x, y, z);
+        if (section == null) {
+            if (access.snapshot != null) return Blocks.VOID_AIR.defaultBlockState();
+            return world.getBlockState(new BlockPos(x, y, z));
+        }
+        return section.get(x & 15, y & 15, z & 15);
+    }
+
+    /**
+     * Same as {@link Level#isLoaded(BlockPos)}, but does not allocate and is faster while a structure is being
+     * iterated.
+     */
+    public static boolean isLoaded(Level world, int x, int y, int z) {
+        StructureBlockAccess access = CURRENT.get();
+        if (access != null && access.world == world) {
+            if (access.isOutsideBuildHeight(y)) return false;
+            if (access.getSection(x, y, z) != null) return true;
+            if (access.snapshot != null) return false;
+        } else if (world.isOutsideBuildHeight(y)) {
+            return false;
+        }
+        return world.getChunkSource().hasChunk(SectionPos.blockToSectionCoord(x), SectionPos.blockToSectionCoord(z));
+    }
+
+    /**
+     * Check the palette of the chunk section containing given position.
+     *
+     * @return false if no block in the section matches, true if some might. Always true outside a structure iteration
+     *         or if the chunk is not loaded.
+     */
+    static boolean maybeHas(Level world, int x, int y, int z, Predicate<BlockState> predicate) {
+        StructureBlockAccess access = CURRENT.get();
+        if (access == null || access.world != world || access.isOutsideBuildHeight(y)) return true;
+        PalettedContainer<BlockState> section = access.getSection(x, y, z);
+        return section == null || section.maybeHas(predicate);
+    }
+
+    private boolean isOutsideBuildHeight(int y) {
+        return y < minY || y >= maxY;
+    }
+
+    /**
+     * @return block states of the section at given position, or null if its chunk is not loaded
+     */
+    private PalettedContainer<BlockState> getSection(int x, int y, int z) {
+        int sectionX = SectionPos.blockToSectionCoord(x);
+        int sectionY = SectionPos.blockToSectionCoord(y);
+        int sectionZ = SectionPos.blockToSectionCoord(z);
+        long key = SectionPos.asLong(sectionX, sectionY, sectionZ);
+        // structure iteration is very local, so the last used section is almost always the one we want
+        if (last < cached && keys[last] == key) return sections[last];
+        for (int i = 0; i < cached; i++) {
+            if (keys[i] == key) {
+                last = i;
+                return sections[i];
+            }
+        }
+        PalettedContainer<BlockState> section;
+        if (snapshot != null) {
+            section = snapshot.getSection(key);
+            if (section == null) return null;
+        } else {
+            LevelChunk chunk = world.getChunkSource().getChunkNow(sectionX, sectionZ);
+            if (chunk == null) return null;
+            section = chunk.getSection(world.getSectionIndexFromSectionY(sectionY)).getStates();
+        }
+        int slot;
+        if (cached < CACHE_SIZE) {
+            slot = cached++;
+        } else {
+            slot = next;
+            next = (next + 1) % CACHE_SIZE;
+        }
+        keys[slot] = key;
+        sections[slot] = section;
+        last = slot;
+        return section;
+    }
+}
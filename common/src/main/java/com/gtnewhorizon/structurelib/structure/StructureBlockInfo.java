@@ -0,0 +1,80 @@
+package com.gtnewhorizon.structurelib.structure;
+
+import net.minecraft.core.BlockPos;
+import net.minecraft.world.level.Level;
+import net.minecraft.world.level.block.Block;
+import net.minecraft.world.level.block.entity.BlockEntity;
+import net.minecraft.world.level.block.state.BlockState;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * The block at a position being checked. Block state and block entity are read from world on first access and then
+ * shared by every element that looks at this position, e.g. all fallbacks of a {@link IStructureElementChain}.
+ * <p>
+ * Instances are reused by the structure walker, so do not hold on to them after
+ * {@link IStructureElement#check(Object, StructureBlockInfo)} returns.
+ */
+public final class StructureBlockInfo {
+
+    private Level world;
+    private int x, y, z;
+    private BlockState state;
+    private BlockEntity blockEntity;
+    private boolean blockEntityRead;
+
+    StructureBlockInfo() {}
+
+    public StructureBlockInfo(Level world, int x, int y, int z) {
+        set(world, x, y, z);
+    }
+
+    StructureBlockInfo set(Level world, int x, int y, int z) {
+        this.world = world;
+        this.x = x;
+        this.y = y;
+        this.z = z;
+        this.state = null;
+        this.blockEntity = null;
+        this.blockEntityRead = false;
+        return this;
+    }
+
+    public Level getWorld() {
+        return world;
+    }
+
+    public int getX() {
+        return x;
+    }
+
+    public int getY() {
+        return y;
+    }
+
+    public int getZ() {
+        return z;
+    }
+
+    public BlockState getState() {
+        if (state == null) state = StructureBlockAccess.getBlockState(world, x, y, z);
+        return state;
+    }
+
+    public Block getBlock() {
+        return getState().getBlock();
+    }
+
+    @Nullable
+    public BlockEntity getBlockEntity() {
+        if (!blockEntityRead) {
+            blockEntity = world.getBlockEntity(new BlockPos(x, y, z));
+            blockEntityRead = true;
+        }
+        return blockEntity;
+    }
+
+    @Override
+    public String toString() {
+        return "StructureBlockInfo{" + "x=" + x + ", y=" + y + ", z=" + z + ", state=" + state + '}';
+    }
+}
@@ -0,0 +1,285 @@
+package com.gtnewhorizon.structurelib.structure;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.WeakHashMap;
+
+import com.gtnewhorizon.structurelib.StructureLibConfig;
+import com.gtnewhorizon.structurelib.alignment.enumerable.ExtendedFacing;
+import it.unimi.dsi.fastutil.longs.Long2LongMap;
+import it.unimi.dsi.fastutil.longs.Long2LongOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.SectionPos;
+import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.level.Level;
+import net.minecraft.world.level.LevelAccessor;
+
+/**
+ * Remembers the result of structure checks until a block in one of the chunk sections covered by the structure
+ * changes, so that periodic checks of an unchanged structure cost one lookup per section instead of one element check
+ * per block.
+ * <p>
+ * Every block change in a section covered by a cached result stamps that section with a value taken from a global
+ * clock. A cached result is valid as long as none of its sections has been stamped after the result was computed.
+ * Results are evicted when any chunk they cover unloads, and the least recently used results are evicted once there
+ * are more than {@link StructureLibConfig.Common#CHECK_CACHE_SIZE} in a world.
+ * <p>
+ * Only structures made entirely of {@linkplain IStructureElement#isSnapshotSafe() snapshot safe} elements are cached,
+ * as only their result is known to depend on nothing but block states. Other structures are always checked in full.
+ * Block changes are picked up from the same platform hooks as {@link StructureWatcher}, which see every successful
+ * {@link Level#setBlock(BlockPos, net.minecraft.world.level.block.state.BlockState, int, int) setBlock} regardless of
+ * its flags. Changes written to chunk sections directly, bypassing setBlock, must be reported through
+ * {@link #onBlockChanged(Level, BlockPos)} by whoever makes them.
+ * <p>
+ * All methods of this class must be called on the server thread.
+ *
+ * @see IStructureDefinition#checkCached(Object, String, Level, ExtendedFacing, int, int, int, int, int, int, boolean)
+ */
+public final class StructureCheckCache {
+
+    private static final Map<Level, LevelCache> CACHES = new WeakHashMap<>();
+    private static long clock;
+
+    private StructureCheckCache() {}
+
+    private static final class Key {
+
+        private final IStructureDefinition<?> definition;
+        private final String piece;
+        private final ExtendedFacing facing;
+        private final int basePositionX, basePositionY, basePositionZ, basePositionA, basePositionB, basePositionC;
+
+        private Key(IStructureDefinition<?> definition, String piece, ExtendedFacing facing, int basePositionX,
+                int basePositionY, int basePositionZ, int basePositionA, int basePositionB, int basePositionC) {
+            this.definition = definition;
+            this.piece = piece;
+            this.facing = facing;
+            this.basePositionX = basePositionX;
+            this.basePositionY = basePositionY;
+            this.basePositionZ = basePositionZ;
+            this.basePositionA = basePositionA;
+            this.basePositionB = basePositionB;
+            this.basePositionC = basePositionC;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key key = (Key) o;
+            return definition == key.definition && facing == key.facing
+                    && basePositionX == key.basePositionX
+                    && basePositionY == key.basePositionY
+                    && basePositionZ == key.basePositionZ
+                    && basePositionA == key.basePositionA
+                    && basePositionB == key.basePositionB
+                    && basePositionC == key.basePositionC
+                    && piece.equals(key.piece);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(
+                    System.identityHashCode(definition),
+                    piece,
+                    facing,
+                    basePositionX,
+                    basePositionY,
+                    basePositionZ,
+                    basePositionA,
+                    basePositionB,
+                    basePositionC);
+        }
+    }
+
+    private static final class Entry extends FootprintIndex.Footprint {
+
+        private final Key key;
+        /**
+         * Sections as per {@link SectionPos#asLong(int, int, int)} covered by the structure, no duplicates.
+         */
+        private final long[] sections;
+        private long checkedAt;
+        private boolean formed;
+
+        private Entry(Key key, long[] positions) {
+            super(positions, false);
+            this.key = key;
+            LongOpenHashSet sections = new LongOpenHashSet();
+            for (long pos : positions) {
+                sections.add(
+                        SectionPos.asLong(
+                                SectionPos.blockToSectionCoord(BlockPos.getX(pos)),
+                                SectionPos.blockToSectionCoord(BlockPos.getY(pos)),
+                                SectionPos.blockToSectionCoord(BlockPos.getZ(pos))));
+            }
+            this.sections = sections.toLongArray();
+        }
+    }
+
+    private static final class LevelCache {
+
+        private final Map<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+        private final FootprintIndex<Entry> footprints = new FootprintIndex<>();
+        /**
+         * Last change of each section touched by any entry. Missing means not changed since its chunk got loaded.
+         */
+        private final Long2LongMap stamps = new Long2LongOpenHashMap();
+
+        private boolean isValid(Entry entry) {
+            for (long section : entry.sections) {
+                if (stamps.get(section) > entry.checkedAt) return false;
+            }
+            return true;
+        }
+
+        private void trim(int maxSize) {
+            Iterator<Entry> iterator = entries.values().iterator();
+            while (entries.size() > maxSize && iterator.hasNext()) {
+                Entry eldest = iterator.next();
+                iterator.remove();
+                footprints.remove(eldest);
+            }
+        }
+    }
+
+    /**
+     * Same as {@link IStructureDefinition#check(Object, String, Level, ExtendedFacing, int, int, int, int, int, int,
+     * boolean)}, but return the cached result if no covered section changed since the last check at the same place.
+     */
+    static <T> boolean check(IStructureDefinition<T> definition, T object, String piece, Level world,
+            ExtendedFacing extendedFacing, int basePositionX, int basePositionY, int basePositionZ, int basePositionA,
+            int basePositionB, int basePositionC, boolean forceCheckAllBlocks) {
+        int maxSize = StructureLibConfig.COMMON.CHECK_CACHE_SIZE;
+        StructurePlan<T> plan = definition.getPlanFor(piece, extendedFacing);
+        if (maxSize <= 0 || world.isClientSide || !plan.isSnapshotSafe()) return definition.check(
+                object,
+                piece,
+                world,
+                extendedFacing,
+                basePositionX,
+                basePositionY,
+                basePositionZ,
+                basePositionA,
+                basePositionB,
+                basePositionC,
+                forceCheckAllBlocks);
+
+        Key key = new Key(
+                definition,
+                piece,
+                extendedFacing,
+                basePositionX,
+                basePositionY,
+                basePositionZ,
+                basePositionA,
+                basePositionB,
+                basePositionC);
+        LevelCache cache = CACHES.get(world);
+        Entry entry = cache == null ? null : cache.entries.get(key);
+        if (entry != null && cache.isValid(entry)) {
+            StructureIndex.update(
+                    object,
+                    definition,
+                    piece,
+                    plan,
+                    world,
+                    basePositionX,
+                    basePositionY,
+                    basePositionZ,
+                    basePositionA,
+                    basePositionB,
+                    basePositionC,
+                    entry.formed);
+            return entry.formed;
+        }
+
+        long checkedAt = clock;
+        boolean formed = definition.check(
+                object,
+                piece,
+                world,
+                extendedFacing,
+                basePositionX,
+                basePositionY,
+                basePositionZ,
+                basePositionA,
+                basePositionB,
+                basePositionC,
+                forceCheckAllBlocks);
+
+        if (entry == null) {
+            entry = new Entry(
+                    key,
+                    plan.toLevelPositions(
+                            basePositionX,
+                            basePositionY,
+                            basePositionZ,
+                            basePositionA,
+                            basePositionB,
+                            basePositionC));
+            // the result of a structure with blocks in unloaded chunks would not survive those chunks loading
+            for (long chunk : entry.getChunks()) {
+                if (!world.getChunkSource().hasChunk(ChunkPos.getX(chunk), ChunkPos.getZ(chunk))) return formed;
+            }
+            if (cache == null) CACHES.put(world, cache = new LevelCache());
+            cache.entries.put(key, entry);
+            cache.footprints.add(entry);
+            cache.trim(maxSize);
+        }
+        entry.checkedAt = checkedAt;
+        entry.formed = formed;
+        return formed;
+    }
+
+    /**
+     * Drop all cached results.
+     */
+    public static void clear() {
+        CACHES.clear();
+    }
+
+    // region platform hooks
+
+    /**
+     * Called by platform code whenever a block changed. Not a stable API.
+     */
+    public static void onBlockChanged(Level world, BlockPos pos) {
+        if (world.isClientSide || CACHES.isEmpty()) return;
+        LevelCache cache = CACHES.get(world);
+        if (cache == null) return;
+        int sectionX = SectionPos.blockToSectionCoord(pos.getX());
+        int sectionZ = SectionPos.blockToSectionCoord(pos.getZ());
+        // only sections of chunks with cached results need to be tracked
+        if (!cache.footprints.touches(ChunkPos.asLong(sectionX, sectionZ))) return;
+        cache.stamps.put(SectionPos.asLong(sectionX, SectionPos.blockToSectionCoord(pos.getY()), sectionZ), ++clock);
+    }
+
+    /**
+     * Called by platform code whenever a chunk unloaded. Not a stable API.
+     */
+    public static void onChunkUnload(LevelAccessor world, ChunkPos pos) {
+        if (world.isClientSide() || CACHES.isEmpty()) return;
+        LevelCache cache = CACHES.get(world);
+        if (cache == null) return;
+        for (Entry entry : cache.footprints.removeChunk(pos.toLong())) {
+            cache.entries.remove(entry.key);
+        }
+        for (int sectionY = world.getMinSection(); sectionY < world.getMaxSection(); sectionY++) {
+            cache.stamps.remove(SectionPos.asLong(pos.x, sectionY, pos.z));
+        }
+    }
+
+    /**
+     * Called by platform code whenever a world unloaded. Not a stable API.
+     */
+    public static void onLevelUnload(LevelAccessor world) {
+        if (world.isClientSide()) return;
+        CACHES.remove(world);
+    }
+
+    // endregion
+}
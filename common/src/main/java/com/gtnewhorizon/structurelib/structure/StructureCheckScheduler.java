@@ -0,0 +1,224 @@
+package com.gtnewhorizon.structurelib.structure;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BooleanSupplier;
+
+import com.gtnewhorizon.structurelib.StructureLib;
+import com.gtnewhorizon.structurelib.StructureLibConfig;
+import com.gtnewhorizon.structurelib.alignment.enumerable.ExtendedFacing;
+import it.unimi.dsi.fastutil.booleans.BooleanConsumer;
+import net.minecraft.world.entity.player.Player;
+import net.minecraft.world.level.Level;
+import net.minecraft.world.level.LevelAccessor;
+import net.minecraft.world.level.block.entity.BlockEntity;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Spreads structure checks over server ticks.
+ * <p>
+ * Instead of calling {@link IStructureDefinition#check} directly, controllers can submit a check here. Each server tick
+ * the scheduler runs pending checks until {@link StructureLibConfig.Common#CHECK_BUDGET} is used up, and reports each
+ * result through the callback given on submission. This smooths out the spike caused by many controllers checking in
+ * the same tick, e.g. after a lot of chunks got loaded at once.
+ * <p>
+ * Checks that waited longer and checks closer to a player run first. Submitting again for a controller that already
+ * has a pending check replaces that check instead of queuing another one. All callbacks of the replaced submissions
+ * will still be called, with the result of the last submitted check.
+ * <p>
+ * All methods of this class must be called on the server thread.
+ */
+public final class StructureCheckScheduler {
+
+    /**
+     * Every this many blocks of distance to the nearest player is worth one tick of waiting.
+     */
+    private static final int BLOCKS_PER_TICK_OF_PRIORITY = 16;
+    private static final Map<Object, Pending> PENDING = new IdentityHashMap<>();
+    private static final List<Pending> QUEUE = new ArrayList<>();
+    private static final Comparator<Pending> BY_PRIORITY = (a, b) -> Long.compare(b.priority, a.priority);
+    private static long tick;
+
+    private StructureCheckScheduler() {}
+
+    private static final class Pending {
+
+        private final Object owner;
+        private final long submitTick;
+        private Level world;
+        private int x, y, z;
+        private BooleanSupplier check;
+        @Nullable
+        private BooleanConsumer callback;
+        private long priority;
+        private boolean cancelled;
+
+        private Pending(Object owner) {
+            this.owner = owner;
+            this.submitTick = tick;
+        }
+
+        private long computePriority() {
+            long best = Long.MAX_VALUE;
+            for (Player player : world.players()) {
+                double dx = player.getX() - x, dy = player.getY() - y, dz = player.getZ() - z;
+                best = Math.min(best, (long) (dx * dx + dy * dy + dz * dz));
+            }
+            long distancePenalty = best == Long.MAX_VALUE ? Integer.MAX_VALUE
+                    : (long) Math.sqrt(best) / BLOCKS_PER_TICK_OF_PRIORITY;
+            return tick - submitTick - distancePenalty;
+        }
+
+        private boolean isStale() {
+            return cancelled || owner instanceof BlockEntity && ((BlockEntity) owner).isRemoved();
+        }
+    }
+
+    /**
+     * Schedule a structure check.
+     *
+     * @param owner    the controller. at most one check will be pending for each owner.
+     * @param world    the world the controller is in. must not be client side.
+     * @param x        X location of the controller, used to prioritize by player proximity
+     * @param y        Y location of the controller, used to prioritize by player proximity
+     * @param z        Z location of the controller, used to prioritize by player proximity
+     * @param check    the check to run. usually calls {@link IStructureDefinition#check} and then some.
+     * @param callback receives the result of the check. can be null.
+     */
+    public static void submit(Object owner, Level world, int x, int y, int z, BooleanSupplier check,
+            @Nullable BooleanConsumer callback) {
+        if (owner == null || check == null) throw new IllegalArgumentException();
+        if (world.isClientSide) throw new IllegalArgumentException("client side world");
+        Pending pending = PENDING.get(owner);
+        if (pending == null) {
+            pending = new Pending(owner);
+            PENDING.put(owner, pending);
+            QUEUE.add(pending);
+        }
+        pending.world = world;
+        pending.x = x;
+        pending.y = y;
+        pending.z = z;
+        pending.check = check;
+        if (callback != null) {
+            pending.callback = pending.callback == null ? callback : pending.callback.andThen(callback);
+        }
+    }
+
+    /**
+     * Schedule a single piece structure check. The base position is used for player proximity.
+     *
+     * @see IStructureDefinition#check(Object, String, Level, ExtendedFacing, int, int, int, int, int, int, boolean)
+     */
+    public static <T> void submit(IStructureDefinition<T> definition, T object, String piece, Level world,
+            ExtendedFacing extendedFacing, int basePositionX, int basePositionY, int basePositionZ, int basePositionA,
+            int basePositionB, int basePositionC, boolean forceCheckAllBlocks, @Nullable BooleanConsumer callback) {
+        submit(
+                object,
+                world,
+                basePositionX,
+                basePositionY,
+                basePositionZ,
+                () -> definition.check(
+                        object,
+                        piece,
+                        world,
+                        extendedFacing,
+                        basePositionX,
+                        basePositionY,
+                        basePositionZ,
+                        basePositionA,
+                        basePositionB,
+                        basePositionC,
+                        forceCheckAllBlocks),
+                callback);
+    }
+
+    /**
+     * Drop the pending check of given controller, if any. Its callbacks will not be called.
+     */
+    public static void cancel(Object owner) {
+        Pending pending = PENDING.remove(owner);
+        // it will be removed from queue on next tick
+        if (pending != null) pending.cancelled = true;
+    }
+
+    public static boolean isPending(Object owner) {
+        return PENDING.containsKey(owner);
+    }
+
+    /**
+     * @return number of server ticks seen so far
+     */
+    static long currentTick() {
+        return tick;
+    }
+
+    // region platform hooks
+
+    /**
+     * Called by platform code at the end of each server tick. Not a stable API.
+     */
+    public static void onServerTick() {
+        tick++;
+        if (QUEUE.isEmpty()) return;
+        for (Iterator<Pending> iterator = QUEUE.iterator(); iterator.hasNext();) {
+            Pending pending = iterator.next();
+            if (pending.isStale()) {
+                iterator.remove();
+                if (!pending.cancelled) PENDING.remove(pending.owner);
+                continue;
+            }
+            pending.priority = pending.computePriority();
+        }
+        QUEUE.sort(BY_PRIORITY);
+
+        long budget = StructureLibConfig.COMMON.CHECK_BUDGET;
+        long start = System.nanoTime();
+        // checks submitted by callbacks are appended to the queue. leave them for next tick
+        int size = QUEUE.size();
+        int done = 0;
+        try {
+            // always run at least one, so that a tiny budget cannot starve the queue
+            while (done < size && (done == 0 || System.nanoTime() - start < budget)) {
+                Pending pending = QUEUE.get(done++);
+                if (pending.cancelled) continue;
+                PENDING.remove(pending.owner);
+                try {
+                    boolean result = pending.check.getAsBoolean();
+                    if (pending.callback != null) pending.callback.accept(result);
+                } catch (RuntimeException e) {
+                    StructureLib.LOGGER.error("Scheduled structure check of {} failed", pending.owner, e);
+                }
+            }
+        } finally {
+            // never run a finished check again, whatever happened
+            QUEUE.subList(0, done).clear();
+        }
+    }
+
+    /**
+     * Called by platform code whenever a world unloaded. Not a stable API.
+     */
+    public static void onLevelUnload(LevelAccessor world) {
+        if (QUEUE.isEmpty()) return;
+        for (Pending pending : QUEUE) {
+            if (pending.world == world && !pending.cancelled) cancel(pending.owner);
+        }
+    }
+
+    /**
+     * Called by platform code when the server is stopping. Not a stable API.
+     */
+    public static void onServerStopping() {
+        QUEUE.clear();
+        PENDING.clear();
+        tick = 0;
+    }
+
+    // endregion
+}
@@ -3,28 +3,41 @@ package com.gtnewhorizon.structurelib.structure;
 import static com.gtnewhorizon.structurelib.structure.StructureUtility.*;
 
 import java.util.*;
-import java.util.stream.Collectors;
 
-import com.gtnewhorizon.structurelib.util.Vec3iUtils;
+import com.gtnewhorizon.structurelib.alignment.enumerable.ExtendedFacing;
+import it.unimi.dsi.fastutil.chars.Char2ObjectMap;
+import it.unimi.dsi.fastutil.chars.Char2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2CharMap;
+import it.unimi.dsi.fastutil.longs.Long2CharOpenHashMap;
 import net.minecraft.core.Vec3i;
 
 public class StructureDefinition<T> implements IStructureDefinition<T> {
 
     private final Map<Character, IStructureElement<T>> elements;
-    private final Map<String, String> shapes;
-    private final Map<String, IStructureElement<T>[]> structures;
-    private final Map<String, Set<Vec3i>> occupiedSpaces;
+    private final Map<String, CompactStructurePiece<T>> pieces;
+    private final Map<String, OccupiedSpace> occupiedSpaces;
+    /**
+     * Compiled plans, indexed by {@link ExtendedFacing#ordinal()}. Filled lazily. Since plans are immutable, two
+     * threads racing to fill the same slot is harmless. All plans of a piece are derived from the first one compiled,
+     * so the per element data is held once per piece, no matter how many facings are in use.
+     */
+    private final Map<String, StructurePlan<T>[]> plans;
 
     public static <B> Builder<B> builder() {
         return new Builder<>();
     }
 
-    private StructureDefinition(Map<Character, IStructureElement<T>> elements, Map<String, String> shapes,
-            Map<String, IStructureElement<T>[]> structures, Map<String, Set<Vec3i>> occupiedSpaces) {
+    private StructureDefinition(Map<Character, IStructureElement<T>> elements,
+            Map<String, CompactStructurePiece<T>> pieces, Map<String, OccupiedSpace> occupiedSpaces) {
         this.elements = elements;
-        this.shapes = shapes;
-        this.structures = structures;
+        this.pieces = pieces;
         this.occupiedSpaces = occupiedSpaces;
+        this.plans = new HashMap<>();
+        for (String name : pieces.keySet()) {
+            @SuppressWarnings("unchecked")
+            StructurePlan<T>[] cache = new StructurePlan[ExtendedFacing.STATES_COUNT];
+            plans.put(name, cache);
+        }
     }
 
     public static class Builder<T> {
@@ -33,13 +46,16 @@ public class StructureDefinition<T> implements IStructureDefinition<T> {
         private static final char B = '\uB000';
         private static final char C = '\uC000';
         private char d = '\uD000';
-        private final Map<Vec3i, Character> navigates;
+        /**
+         * Generated navigate chars, keyed by their step packed as in {@link #navigate(int, int, int)}.
+         */
+        private final Long2CharMap navigates;
         private final Map<Character, IStructureElement<T>> elements;
-        private final Map<String, String> shapes;
-        private final Map<String, Set<Vec3i>> occupiedSpaces;
+        private final Map<String, CompactStructurePiece.Encoder> shapes;
+        private final Map<String, OccupiedSpace> occupiedSpaces;
 
         private Builder() {
-            navigates = new HashMap<>();
+            navigates = new Long2CharOpenHashMap();
             elements = new HashMap<>();
             shapes = new HashMap<>();
             occupiedSpaces = new HashMap<>();
@@ -49,8 +65,13 @@ public class StructureDefinition<T> implements IStructureDefinition<T> {
             return elements;
         }
 
+        /**
+         * Decoded from the encoded shapes on every call.
+         */
         public Map<String, String> getShapes() {
-            return shapes;
+            Map<String, String> decoded = new HashMap<>();
+            shapes.forEach((name, shape) -> decoded.put(name, shape.toShape()));
+            return decoded;
         }
 
         /**
@@ -76,82 +97,109 @@ public class StructureDefinition<T> implements IStructureDefinition<T> {
          * @return this builder
          */
         public Builder<T> addShape(String name, String[][] structurePiece) {
-            StringBuilder builder = new StringBuilder();
-            if (structurePiece.length > 0) {
-                for (String[] strings : structurePiece) {
-                    if (strings.length > 0) {
-                        for (String string : strings) {
-                            builder.append(string).append(B);
-                        }
-                        builder.setLength(builder.length() - 1);
-                    }
-                    builder.append(C);
-                }
-                builder.setLength(builder.length() - 1);
+            return addShape(name, Arrays.asList(structurePiece));
+        }
+
+        /**
+         * Same as {@link #addShape(String, String[][])}, but takes the slices one at a time, so that very large shapes
+         * can be streamed from their source instead of being held in memory as a whole. Each slice is compiled as it
+         * is consumed, in time linear in its length.
+         *
+         * @param name   unlocalized/code name
+         * @param slices slices of the shape, in C order. each slice is a two-dimensional string array, as above.
+         * @return this builder
+         */
+        public Builder<T> addShape(String name, Iterable<String[]> slices) {
+            ShapeCompiler compiler = new ShapeCompiler();
+            for (String[] slice : slices) {
+                compiler.addSlice(slice);
+            }
+
+            occupiedSpaces.put(name, compiler.occupiedSpace.build());
+
+            if (compiler.hasNotAir) {
+                addElement('+', notAir());
+            }
+            if (compiler.hasAir) {
+                addElement('-', isAir());
             }
-            Set<Vec3i> occupiedSpace = new HashSet<>();
+            shapes.put(name, compiler.shape.finish());
+            return this;
+        }
+
+        /**
+         * Turns slices into the element chars of a shape, run length encoded as they are produced. Skips are collapsed
+         * into generated navigate chars, inserted right before the next element.
+         */
+        private class ShapeCompiler {
+
+            private final CompactStructurePiece.Encoder shape = new CompactStructurePiece.Encoder();
+            private final OccupiedSpace.Builder occupiedSpace = new OccupiedSpace.Builder();
             // these track the global current location
-            int aa = 0, bb = 0, cc = 0;
+            private int aa, bb, cc;
             // these track the vec3 towards next meaningful element
-            int a = 0, b = 0, c = 0;
-            // I do know these are pretty bad variable naming, but I have no better idea
-            for (int i = 0; i < builder.length(); i++) {
-                char ch = builder.charAt(i);
-                if (ch == ' ') {
-                    builder.setCharAt(i, A);
-                    ch = A;
-                } else if (ch == '~') {
-                    builder.setCharAt(i, A);
-                    ch = A;
-                    occupiedSpace.add(Vec3iUtils.getFromPool(aa, bb, cc));
-                }
-                if (ch == A) {
-                    aa++;
-                    a++;
-                } else if (ch == B) {
-                    aa = 0;
-                    a = 0;
-                    bb++;
-                    b++;
-                } else if (ch == C) {
+            private int a, b, c;
+            private boolean firstSlice = true;
+            private boolean hasNotAir, hasAir;
+
+            private void addSlice(String[] slice) {
+                if (!firstSlice) {
                     aa = 0;
                     bb = 0;
                     a = 0;
                     b = 0;
                     c++;
                     cc++;
-                } else if (a != 0 || b != 0 || c != 0) {
-                    Vec3i vec3 = new Vec3i(a, b, c);
-                    Character navigate = navigates.get(vec3);
-                    if (navigate == null) {
-                        navigate = d++;
-                        navigates.put(vec3, navigate);
-                        addElement(navigate, step(vec3));
+                }
+                firstSlice = false;
+                for (int line = 0; line < slice.length; line++) {
+                    if (line > 0) {
+                        aa = 0;
+                        a = 0;
+                        bb++;
+                        b++;
                     }
-                    builder.setCharAt(i - 1, navigate);
-                    occupiedSpace.add(Vec3iUtils.getFromPool(aa, bb, cc));
+                    String string = slice[line];
+                    for (int i = 0; i < string.length(); i++) {
+                        addChar(string.charAt(i));
+                    }
+                }
+            }
+
+            private void addChar(char ch) {
+                if (ch == ' ') {
                     aa++;
+                    a++;
+                    return;
+                }
+                occupiedSpace.add(aa, bb, cc);
+                aa++;
+                if (ch == '~') {
+                    a++;
+                    return;
+                }
+                if (a != 0 || b != 0 || c != 0) {
+                    shape.add(navigate(a, b, c));
                     a = 0;
                     b = 0;
                     c = 0;
-                } else {
-                    occupiedSpace.add(Vec3iUtils.getFromPool(aa, bb, cc));
-                    aa++;
                 }
+                shape.add(ch);
+                if (ch == '+') hasNotAir = true;
+                else if (ch == '-') hasAir = true;
             }
+        }
 
-            occupiedSpaces.put(name, occupiedSpace);
-
-            String built = builder.toString().replaceAll("[\\uA000\\uB000\\uC000]", "");
-
-            if (built.contains("+")) {
-                addElement('+', notAir());
-            }
-            if (built.contains("-")) {
-                addElement('-', isAir());
+        private char navigate(int a, int b, int c) {
+            if (a >= 1 << 21 || b >= 1 << 21 || c >= 1 << 21) throw new IllegalArgumentException("shape too large");
+            long key = (long) a << 42 | (long) b << 21 | c;
+            char navigate = navigates.get(key);
+            if (navigate == 0) {
+                navigate = d++;
+                navigates.put(key, navigate);
+                addElement(navigate, step(new Vec3i(a, b, c)));
             }
-            shapes.put(name, built);
-            return this;
+            return navigate;
         }
 
         public Builder<T> addElement(char name, IStructureElement<T> structurePiece) {
@@ -160,49 +208,34 @@ public class StructureDefinition<T> implements IStructureDefinition<T> {
         }
 
         public IStructureDefinition<T> build() {
-            Map<String, IStructureElement<T>[]> structures = compileStructureMap();
-            return new StructureDefinition<>(
-                    new HashMap<>(elements),
-                    new HashMap<>(shapes),
-                    structures,
-                    occupiedSpaces);
+            return new StructureDefinition<>(new HashMap<>(elements), compilePieces(), new HashMap<>(occupiedSpaces));
         }
 
-        @SuppressWarnings("unchecked")
-        private Map<String, IStructureElement<T>[]> compileElementSetMap() {
-            Set<Integer> missing = findMissing();
-            if (missing.isEmpty()) {
-                return shapes.entrySet().stream().collect(
-                        Collectors.toMap(
-                                Map.Entry::getKey,
-                                e -> e.getValue().chars().mapToObj(c -> (char) c).distinct().map(elements::get)
-                                        .toArray(IStructureElement[]::new)));
-            } else {
-                throw new RuntimeException(
-                        "Missing Structure Element bindings for (chars as integers): "
-                                + Arrays.toString(missing.toArray()));
+        private Map<String, CompactStructurePiece<T>> compilePieces() {
+            Char2ObjectMap<IStructureElement<T>> lookup = new Char2ObjectOpenHashMap<>(elements.size());
+            for (Map.Entry<Character, IStructureElement<T>> e : elements.entrySet()) {
+                lookup.put(e.getKey().charValue(), e.getValue());
             }
-        }
-
-        @SuppressWarnings("unchecked")
-        private Map<String, IStructureElement<T>[]> compileStructureMap() {
-            Set<Integer> missing = findMissing();
-            if (missing.isEmpty()) {
-                return shapes.entrySet().stream().collect(
-                        Collectors.toMap(
-                                Map.Entry::getKey,
-                                e -> e.getValue().chars().mapToObj(c -> elements.get((char) c))
-                                        .toArray(IStructureElement[]::new)));
-            } else {
+            Set<Integer> missing = null;
+            for (CompactStructurePiece.Encoder shape : shapes.values()) {
+                // only distinct chars need to be looked at
+                for (char ch : shape.getChars()) {
+                    if (!lookup.containsKey(ch)) {
+                        if (missing == null) missing = new TreeSet<>();
+                        missing.add((int) ch);
+                    }
+                }
+            }
+            if (missing != null) {
                 throw new RuntimeException(
                         "Missing Structure Element bindings for (chars as integers): "
                                 + Arrays.toString(missing.toArray()));
             }
-        }
-
-        private Set<Integer> findMissing() {
-            return shapes.values().stream().flatMapToInt(CharSequence::chars)
-                    .filter(i -> !elements.containsKey((char) i)).boxed().collect(Collectors.toSet());
+            Map<String, CompactStructurePiece<T>> pieces = new HashMap<>();
+            for (Map.Entry<String, CompactStructurePiece.Encoder> e : shapes.entrySet()) {
+                pieces.put(e.getKey(), e.getValue().bind(lookup));
+            }
+            return pieces;
         }
     }
 
@@ -210,25 +243,71 @@ public class StructureDefinition<T> implements IStructureDefinition<T> {
         return elements;
     }
 
+    /**
+     * Decoded from the compact pieces on every call.
+     */
     public Map<String, String> getShapes() {
+        Map<String, String> shapes = new HashMap<>();
+        pieces.forEach((name, piece) -> shapes.put(name, piece.toShape()));
         return shapes;
     }
 
+    /**
+     * Decoded from the compact pieces on every call. Prefer {@link #getPiece(String)}.
+     */
     public Map<String, IStructureElement<T>[]> getStructures() {
+        Map<String, IStructureElement<T>[]> structures = new HashMap<>();
+        pieces.forEach((name, piece) -> structures.put(name, piece.toArray()));
         return structures;
     }
 
+    /**
+     * @param name same name as for other methods here
+     * @return the elements of given structure piece, in compact form
+     * @throws NoSuchElementException if the given structure piece is not found
+     */
+    public CompactStructurePiece<T> getPiece(String name) {
+        CompactStructurePiece<T> piece = pieces.get(name);
+        if (piece == null) throw new NoSuchElementException(name);
+        return piece;
+    }
+
+    /**
+     * Decoded from the compact piece on every call. Prefer {@link #getPiece(String)}.
+     */
     @Override
     public IStructureElement<T>[] getStructureFor(String name) {
-        IStructureElement<T>[] elements = structures.get(name);
-        if (elements == null) throw new NoSuchElementException(name);
-        return elements;
+        return getPiece(name).toArray();
+    }
+
+    @Override
+    public StructurePlan<T> getPlanFor(String name, ExtendedFacing facing) {
+        StructurePlan<T>[] cache = plans.get(name);
+        if (cache == null) throw new NoSuchElementException(name);
+        StructurePlan<T> plan = cache[facing.ordinal()];
+        if (plan == null) {
+            // reuse facing independent parts if any other facing is already compiled
+            for (StructurePlan<T> other : cache) {
+                if (other != null) {
+                    plan = other.withFacing(facing);
+                    break;
+                }
+            }
+            if (plan == null) plan = StructurePlan.compile(getPiece(name), facing);
+            cache[facing.ordinal()] = plan;
+        }
+        return plan;
     }
 
     @Override
     public boolean isContainedInStructure(String name, int offsetA, int offsetB, int offsetC) {
-        Set<Vec3i> occupiedSpace = occupiedSpaces.get(name);
+        return getOccupiedSpace(name).contains(offsetA, offsetB, offsetC);
+    }
+
+    @Override
+    public OccupiedSpace getOccupiedSpace(String name) {
+        OccupiedSpace occupiedSpace = occupiedSpaces.get(name);
         if (occupiedSpace == null) throw new NoSuchElementException(name);
-        return occupiedSpace.contains(new Vec3i(offsetA, offsetB, offsetC));
+        return occupiedSpace;
     }
 }
@@ -0,0 +1,222 @@
+package com.gtnewhorizon.structurelib.structure;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.gtnewhorizon.structurelib.alignment.enumerable.ExtendedFacing;
+import net.minecraft.core.BlockPos;
+import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.level.Level;
+import net.minecraft.world.level.LevelAccessor;
+import net.minecraft.world.level.block.entity.BlockEntity;
+
+/**
+ * Index of formed structures in each server side world, from block position to the context objects (usually the
+ * controllers) of all structures occupying it.
+ * <p>
+ * {@link IStructureDefinition#check} updates this index automatically: a successful check registers the footprint of
+ * the checked piece under its context object, a failed check removes it. Each context object can own one footprint per
+ * piece name. Footprints are evicted when any chunk they cover unloads, so a structure will only be found again after
+ * it has been checked again.
+ * <p>
+ * Call {@link #remove(Level, Object)} when a controller is removed. Controllers that are block entities are also
+ * dropped lazily once {@link BlockEntity#isRemoved()}.
+ */
+public final class StructureIndex {
+
+    /**
+     * Not weak, as owners usually reference their world. Entries are dropped on world unload instead.
+     */
+    private static final Map<Level, LevelIndex> INDICES = Collections.synchronizedMap(new HashMap<>());
+
+    private StructureIndex() {}
+
+    private static final class Entry extends FootprintIndex.Footprint {
+
+        private final Object owner;
+        private final IStructureDefinition<?> definition;
+        private final String piece;
+        private final ExtendedFacing facing;
+        private final int basePositionX, basePositionY, basePositionZ, basePositionA, basePositionB, basePositionC;
+
+        private Entry(Object owner, IStructureDefinition<?> definition, String piece, StructurePlan<?> plan,
+                int basePositionX, int basePositionY, int basePositionZ, int basePositionA, int basePositionB,
+                int basePositionC) {
+            super(
+                    plan.toLevelPositions(
+                            basePositionX,
+                            basePositionY,
+                            basePositionZ,
+                            basePositionA,
+                            basePositionB,
+                            basePositionC));
+            this.owner = owner;
+            this.definition = definition;
+            this.piece = piece;
+            this.facing = plan.getFacing();
+            this.basePositionX = basePositionX;
+            this.basePositionY = basePositionY;
+            this.basePositionZ = basePositionZ;
+            this.basePositionA = basePositionA;
+            this.basePositionB = basePositionB;
+            this.basePositionC = basePositionC;
+        }
+
+        /**
+         * Compares what the footprint is derived from rather than plan identity, as definitions are not required to
+         * cache their plans.
+         */
+        private boolean isSame(IStructureDefinition<?> definition, ExtendedFacing facing, int basePositionX,
+                int basePositionY, int basePositionZ, int basePositionA, int basePositionB, int basePositionC) {
+            return this.definition == definition && this.facing == facing
+                    && this.basePositionX == basePositionX
+                    && this.basePositionY == basePositionY
+                    && this.basePositionZ == basePositionZ
+                    && this.basePositionA == basePositionA
+                    && this.basePositionB == basePositionB
+                    && this.basePositionC == basePositionC;
+        }
+
+        private boolean isStale() {
+            return owner instanceof BlockEntity && ((BlockEntity) owner).isRemoved();
+        }
+    }
+
+    private static final class LevelIndex {
+
+        private final FootprintIndex<Entry> footprints = new FootprintIndex<>();
+        private final Map<Object, Map<String, Entry>> byOwner = new IdentityHashMap<>();
+
+        private void remove(Entry entry) {
+            footprints.remove(entry);
+            forget(entry);
+        }
+
+        private void forget(Entry entry) {
+            Map<String, Entry> pieces = byOwner.get(entry.owner);
+            if (pieces == null || pieces.get(entry.piece) != entry) return;
+            pieces.remove(entry.piece);
+            if (pieces.isEmpty()) byOwner.remove(entry.owner);
+        }
+    }
+
+    /**
+     * Get the context objects of all formed structures containing given position.
+     *
+     * @return owners. never null. no duplicates.
+     */
+    public static List<Object> ownersAt(Level world, int x, int y, int z) {
+        LevelIndex index = INDICES.get(world);
+        if (index == null) return Collections.emptyList();
+        synchronized (index) {
+            List<Entry> entries = index.footprints.getAt(x, y, z);
+            if (entries.isEmpty()) return Collections.emptyList();
+            List<Object> owners = new ArrayList<>(entries.size());
+            for (Entry entry : entries) {
+                if (entry.isStale()) {
+                    index.remove(entry);
+                    continue;
+                }
+                // a structure might have multiple pieces overlapping
+                if (!owners.contains(entry.owner)) owners.add(entry.owner);
+            }
+            return owners;
+        }
+    }
+
+    public static List<Object> ownersAt(Level world, BlockPos pos) {
+        return ownersAt(world, pos.getX(), pos.getY(), pos.getZ());
+    }
+
+    /**
+     * Remove all footprints owned by given context object.
+     */
+    public static void remove(Level world, Object owner) {
+        LevelIndex index = INDICES.get(world);
+        if (index == null) return;
+        synchronized (index) {
+            Map<String, Entry> pieces = index.byOwner.remove(owner);
+            if (pieces == null) return;
+            for (Entry entry : pieces.values()) {
+                index.footprints.remove(entry);
+            }
+        }
+    }
+
+    /**
+     * Record the result of a structure check.
+     */
+    static void update(Object owner, IStructureDefinition<?> definition, String piece, StructurePlan<?> plan,
+            Level world, int basePositionX, int basePositionY, int basePositionZ, int basePositionA, int basePositionB,
+            int basePositionC, boolean formed) {
+        if (owner == null || world.isClientSide) return;
+        LevelIndex index = INDICES.get(world);
+        if (index == null) {
+            if (!formed) return;
+            index = INDICES.computeIfAbsent(world, w -> new LevelIndex());
+        }
+        synchronized (index) {
+            Map<String, Entry> pieces = index.byOwner.get(owner);
+            Entry old = pieces == null ? null : pieces.get(piece);
+            if (formed) {
+                // the usual case is a periodic recheck of an unchanged structure. avoid rebuilding the footprint
+                if (old != null && old.isSame(
+                        definition,
+                        plan.getFacing(),
+                        basePositionX,
+                        basePositionY,
+                        basePositionZ,
+                        basePositionA,
+                        basePositionB,
+                        basePositionC))
+                    return;
+                if (old != null) index.footprints.remove(old);
+                Entry entry = new Entry(
+                        owner,
+                        definition,
+                        piece,
+                        plan,
+                        basePositionX,
+                        basePositionY,
+                        basePositionZ,
+                        basePositionA,
+                        basePositionB,
+                        basePositionC);
+                if (pieces == null) index.byOwner.put(owner, pieces = new HashMap<>());
+                pieces.put(piece, entry);
+                index.footprints.add(entry);
+            } else if (old != null) {
+                index.remove(old);
+            }
+        }
+    }
+
+    // region platform hooks
+
+    /**
+     * Called by platform code whenever a chunk unloaded. Not a stable API.
+     */
+    public static void onChunkUnload(LevelAccessor world, ChunkPos pos) {
+        if (INDICES.isEmpty()) return;
+        LevelIndex index = INDICES.get(world);
+        if (index == null) return;
+        synchronized (index) {
+            for (Entry entry : index.footprints.removeChunk(pos.toLong())) {
+                index.forget(entry);
+            }
+        }
+    }
+
+    /**
+     * Called by platform code whenever a world unloaded. Not a stable API.
+     */
+    public static void onLevelUnload(LevelAccessor world) {
+        INDICES.remove(world);
+    }
+
+    // endregion
+}
@@ -0,0 +1,461 @@
+package com.gtnewhorizon.structurelib.structure;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+import com.gtnewhorizon.structurelib.alignment.enumerable.ExtendedFacing;
+import it.unimi.dsi.fastutil.bytes.ByteArrayList;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import net.minecraft.core.BlockPos;
+import net.minecraft.world.level.Level;
+import net.minecraft.world.level.block.state.BlockState;
+
+/**
+ * A structure piece compiled for one particular {@link ExtendedFacing}.
+ * <p>
+ * The plan walks the run length encoded palette indices of a {@link CompactStructurePiece} directly, see
+ * {@link Cursor}. The A, B, C offset of each element is advanced incrementally while walking, and the X, Y, Z offset is
+ * derived from it using the axes of the facing. Everything that is precomputed is kept per palette entry, not per
+ * element, so a plan takes about as much memory as the piece it was compiled from. Plans of the same piece for
+ * different facings share all of it, see {@link #withFacing(ExtendedFacing)}.
+ * <p>
+ * Instances are effectively immutable and can be freely shared and cached.
+ *
+ * @param <T> Type of the context object.
+ */
+public final class StructurePlan<T> {
+
+    private static final int PROBES_PER_ELEMENT = 4;
+    private static final byte NAVIGATING = 1, RESET_A = 2, RESET_B = 4, RESET_C = 8;
+    private final ExtendedFacing facing;
+    final IStructureElement<T>[] palette;
+    /**
+     * Pairs of unsigned varints, palette index followed by run length. Same format as {@link CompactStructurePiece}.
+     */
+    final byte[] runs;
+    /**
+     * Number of real (i.e. non-navigating) elements.
+     */
+    private final int size;
+    /**
+     * {@link #NAVIGATING} and reset flags of each palette entry.
+     */
+    private final byte[] flags;
+    /**
+     * Step along A, B, C of each navigating palette entry. Stored as {@code [a0, b0, c0, a1, b1, c1, ...]}.
+     */
+    private final int[] steps;
+    /**
+     * For each palette entry that is a {@linkplain IStructureElement#isStateMatcher() state matcher}, the set to test
+     * block states against in place of calling its check. Null for other entries.
+     */
+    final BlockStateSet[] matchers;
+    /**
+     * X, Y, Z offset of one step along A, B and C respectively, as per the facing.
+     */
+    private final int ax, ay, az, bx, by, bz, cx, cy, cz;
+    /**
+     * Lazily computed. 0 = unknown, 1 = safe, 2 = not safe. Racy but idempotent.
+     */
+    private byte snapshotSafe;
+    /**
+     * A, B, C offset of the positions to probe for a {@linkplain #quickReject quick reject}. Stored like
+     * {@link #steps}.
+     */
+    private final int[] probes;
+    /**
+     * {@link IStructureElement#getAcceptedStates()} of the element at each probe.
+     */
+    private final Predicate<BlockState>[] probeStates;
+
+    private StructurePlan(ExtendedFacing facing, IStructureElement<T>[] palette, byte[] runs, int size, byte[] flags,
+            int[] steps, BlockStateSet[] matchers, int[] probes, Predicate<BlockState>[] probeStates) {
+        this.facing = facing;
+        this.palette = palette;
+        this.runs = runs;
+        this.size = size;
+        this.flags = flags;
+        this.steps = steps;
+        this.matchers = matchers;
+        int[] in = new int[3];
+        int[] out = new int[3];
+        in[0] = 1;
+        facing.getLevelOffset(in, out);
+        ax = out[0];
+        ay = out[1];
+        az = out[2];
+        in[0] = 0;
+        in[1] = 1;
+        facing.getLevelOffset(in, out);
+        bx = out[0];
+        by = out[1];
+        bz = out[2];
+        in[1] = 0;
+        in[2] = 1;
+        facing.getLevelOffset(in, out);
+        cx = out[0];
+        cy = out[1];
+        cz = out[2];
+        this.probes = probes;
+        this.probeStates = probeStates;
+    }
+
+    /**
+     * Compile given structure piece for given facing.
+     *
+     * @param piece  the structure piece
+     * @param facing the orientation to compile for
+     * @return compiled plan
+     */
+    public static <T> StructurePlan<T> compile(CompactStructurePiece<T> piece, ExtendedFacing facing) {
+        return compile(piece.getPalette(), piece.getRuns(), facing);
+    }
+
+    /**
+     * Compile given structure piece for given facing. The piece is run length encoded first, so prefer
+     * {@link #compile(CompactStructurePiece, ExtendedFacing)} if a compact piece is at hand.
+     *
+     * @param elements the structure piece, as returned by {@link IStructureDefinition#getStructureFor(String)}
+     * @param facing   the orientation to compile for
+     * @return compiled plan
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> StructurePlan<T> compile(IStructureElement<T>[] elements, ExtendedFacing facing) {
+        Map<IStructureElement<T>, Integer> indices = new IdentityHashMap<>();
+        List<IStructureElement<T>> palette = new ArrayList<>();
+        ByteArrayList runs = new ByteArrayList();
+        int i = 0;
+        while (i < elements.length) {
+            IStructureElement<T> element = elements[i];
+            int start = i;
+            while (i < elements.length && elements[i] == element) i++;
+            Integer index = indices.get(element);
+            if (index == null) {
+                index = palette.size();
+                indices.put(element, index);
+                palette.add(element);
+            }
+            CompactStructurePiece.writeVarInt(runs, index);
+            CompactStructurePiece.writeVarInt(runs, i - start);
+        }
+        return compile(palette.toArray(new IStructureElement[0]), runs.toByteArray(), facing);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> StructurePlan<T> compile(IStructureElement<T>[] palette, byte[] runs, ExtendedFacing facing) {
+        byte[] flags = new byte[palette.length];
+        int[] steps = new int[palette.length * 3];
+        BlockStateSet[] matchers = new BlockStateSet[palette.length];
+        // share one set among palette entries of the same element
+        Map<IStructureElement<T>, BlockStateSet> distinct = new IdentityHashMap<>();
+        for (int i = 0; i < palette.length; i++) {
+            IStructureElement<T> element = palette[i];
+            if (element.isNavigating()) {
+                flags[i] = (byte) (NAVIGATING | (element.resetA() ? RESET_A : 0)
+                        | (element.resetB() ? RESET_B : 0)
+                        | (element.resetC() ? RESET_C : 0));
+                steps[i * 3] = element.getStepA();
+                steps[i * 3 + 1] = element.getStepB();
+                steps[i * 3 + 2] = element.getStepC();
+            } else {
+                matchers[i] = distinct.computeIfAbsent(element, e -> {
+                    if (!e.isStateMatcher()) return null;
+                    Predicate<BlockState> accepted = e.getAcceptedStates();
+                    return accepted == null ? null : BlockStateSet.of(accepted);
+                });
+            }
+        }
+        // the plan is complete except for size and probes, which are found by walking it
+        StructurePlan<T> plan = new StructurePlan<>(
+                facing,
+                palette,
+                runs,
+                0,
+                flags,
+                steps,
+                matchers,
+                new int[0],
+                new Predicate[0]);
+        int[] occurrences = new int[palette.length];
+        Cursor<T> cursor = new Cursor<T>().reset(plan);
+        int size = 0;
+        while (cursor.next()) {
+            occurrences[cursor.entry]++;
+            size++;
+        }
+        IntArrayList probes = new IntArrayList();
+        List<Predicate<BlockState>> probeStates = new ArrayList<>();
+        collectProbes(plan, occurrences, probes, probeStates);
+        return new StructurePlan<>(
+                facing,
+                palette,
+                runs,
+                size,
+                flags,
+                steps,
+                matchers,
+                probes.toIntArray(),
+                probeStates.toArray(new Predicate[0]));
+    }
+
+    /**
+     * Pick a few occurrences of every palette entry that knows its accepted states. There are usually far fewer
+     * distinct elements than positions. Occurrences are picked evenly spread, so they are likely to fall in different
+     * chunk sections.
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> void collectProbes(StructurePlan<T> plan, int[] occurrences, IntArrayList probes,
+            List<Predicate<BlockState>> probeStates) {
+        IStructureElement<T>[] palette = plan.palette;
+        Predicate<BlockState>[] accepted = new Predicate[palette.length];
+        for (int i = 0; i < palette.length; i++) {
+            if ((plan.flags[i] & NAVIGATING) == 0) accepted[i] = palette[i].getAcceptedStates();
+        }
+        int[] seen = new int[palette.length];
+        int[] picked = new int[palette.length];
+        Cursor<T> cursor = new Cursor<T>().reset(plan);
+        while (cursor.next()) {
+            int entry = cursor.entry;
+            if (accepted[entry] == null) continue;
+            int total = occurrences[entry];
+            int count = Math.min(total, PROBES_PER_ELEMENT);
+            // first and last occurrence are always included
+            if (picked[entry] < count
+                    && seen[entry] == (count == 1 ? 0 : picked[entry] * (total - 1) / (count - 1))) {
+                probes.add(cursor.a);
+                probes.add(cursor.b);
+                probes.add(cursor.c);
+                probeStates.add(accepted[entry]);
+                picked[entry]++;
+            }
+            seen[entry]++;
+        }
+    }
+
+    /**
+     * Get a plan of the same piece, but compiled for another facing. This reuses everything that is not facing
+     * dependent, i.e. everything but a few fields.
+     *
+     * @param facing the orientation to compile for
+     * @return compiled plan. might be this if facing is the same.
+     */
+    public StructurePlan<T> withFacing(ExtendedFacing facing) {
+        if (facing == this.facing) return this;
+        return new StructurePlan<>(facing, palette, runs, size, flags, steps, matchers, probes, probeStates);
+    }
+
+    /**
+     * @return X offset of given A, B, C offset, relative to piece origin
+     */
+    int x(int a, int b, int c) {
+        return ax * a + bx * b + cx * c;
+    }
+
+    /**
+     * @return Y offset of given A, B, C offset, relative to piece origin
+     */
+    int y(int a, int b, int c) {
+        return ay * a + by * b + cy * c;
+    }
+
+    /**
+     * @return Z offset of given A, B, C offset, relative to piece origin
+     */
+    int z(int a, int b, int c) {
+        return az * a + bz * b + cz * c;
+    }
+
+    public ExtendedFacing getFacing() {
+        return facing;
+    }
+
+    /**
+     * @return number of real (i.e. non-navigating) elements in this plan
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return true if every element of this plan is {@linkplain IStructureElement#isSnapshotSafe() snapshot safe}
+     */
+    public boolean isSnapshotSafe() {
+        if (snapshotSafe == 0) {
+            boolean safe = true;
+            for (int i = 0; i < palette.length; i++) {
+                if ((flags[i] & NAVIGATING) == 0 && !palette[i].isSnapshotSafe()) {
+                    safe = false;
+                    break;
+                }
+            }
+            snapshotSafe = safe ? (byte) 1 : (byte) 2;
+        }
+        return snapshotSafe == 1;
+    }
+
+    /**
+     * @return true if there is anything for {@link #quickReject(Level, int, int, int)} to look at
+     */
+    boolean hasProbes() {
+        return probes.length > 0;
+    }
+
+    /**
+     * Look at the palettes of a few chunk sections covered by this plan to find out whether the structure is certainly
+     * incomplete, without reading individual blocks. Sections in unloaded chunks are skipped. Must be called while
+     * {@link StructureBlockAccess} is active for given world.
+     *
+     * @param world   the world object this check takes place in.
+     * @param offsetX X of the piece origin, i.e. base position with the base offset applied
+     * @param offsetY Y of the piece origin, i.e. base position with the base offset applied
+     * @param offsetZ Z of the piece origin, i.e. base position with the base offset applied
+     * @return true if some element certainly fails, false if unknown
+     */
+    boolean quickReject(Level world, int offsetX, int offsetY, int offsetZ) {
+        for (int i = 0, j = 0; i < probeStates.length; i++, j += 3) {
+            int a = probes[j], b = probes[j + 1], c = probes[j + 2];
+            if (!StructureBlockAccess.maybeHas(
+                    world,
+                    x(a, b, c) + offsetX,
+                    y(a, b, c) + offsetY,
+                    z(a, b, c) + offsetZ,
+                    probeStates[i]))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Get the position of every element in world, packed as per {@link BlockPos#asLong(int, int, int)}, in iteration
+     * order.
+     *
+     * @param basePositionX X location of the structure
+     * @param basePositionY Y location of the structure
+     * @param basePositionZ Z location of the structure
+     * @param basePositionA see {@link IStructureDefinition} class javadoc
+     * @param basePositionB see {@link IStructureDefinition} class javadoc
+     * @param basePositionC see {@link IStructureDefinition} class javadoc
+     * @return a new array of packed positions
+     */
+    public long[] toLevelPositions(int basePositionX, int basePositionY, int basePositionZ, int basePositionA,
+            int basePositionB, int basePositionC) {
+        int[] baseOffset = new int[3];
+        facing.getLevelOffset(new int[] { -basePositionA, -basePositionB, -basePositionC }, baseOffset);
+        int offsetX = basePositionX + baseOffset[0];
+        int offsetY = basePositionY + baseOffset[1];
+        int offsetZ = basePositionZ + baseOffset[2];
+        long[] positions = new long[size];
+        Cursor<T> cursor = new Cursor<T>().reset(this);
+        while (cursor.next()) {
+            int a = cursor.a, b = cursor.b, c = cursor.c;
+            positions[cursor.index] = BlockPos
+                    .asLong(x(a, b, c) + offsetX, y(a, b, c) + offsetY, z(a, b, c) + offsetZ);
+        }
+        return positions;
+    }
+
+    @Override
+    public String toString() {
+        return "StructurePlan{" + "facing=" + facing + ", size=" + size + '}';
+    }
+
+    /**
+     * Walks the real elements of a plan in order, resolving navigates on the fly. Reusable, so that walking a plan does
+     * not need to allocate anything.
+     * <p>
+     * Usage: {@code cursor.reset(plan); while (cursor.next()) { ... }}
+     *
+     * @param <T> Type of the context object.
+     */
+    static final class Cursor<T> {
+
+        private StructurePlan<T> plan;
+        private int pos;
+        private int remaining;
+        /**
+         * Palette index of the current element.
+         */
+        int entry;
+        IStructureElement<T> element;
+        /**
+         * Matcher of the current element, or null if its check must be called.
+         */
+        BlockStateSet matcher;
+        /**
+         * A, B, C offset of the current element, relative to piece origin.
+         */
+        int a, b, c;
+        /**
+         * Index of the current element, counting real elements only.
+         */
+        int index;
+
+        Cursor<T> reset(StructurePlan<T> plan) {
+            this.plan = plan;
+            pos = 0;
+            remaining = 0;
+            element = null;
+            matcher = null;
+            a = b = c = 0;
+            index = -1;
+            return this;
+        }
+
+        /**
+         * Stop referencing the plan and its elements.
+         */
+        void clear() {
+            plan = null;
+            element = null;
+            matcher = null;
+        }
+
+        /**
+         * Move to the next real element.
+         *
+         * @return false if there is none, in which case the cursor must be reset before use
+         */
+        boolean next() {
+            StructurePlan<T> plan = this.plan;
+            if (element != null) a++;
+            while (remaining == 0) {
+                byte[] runs = plan.runs;
+                if (pos >= runs.length) {
+                    element = null;
+                    return false;
+                }
+                int entry = readVarInt(runs);
+                int count = readVarInt(runs);
+                byte flags = plan.flags[entry];
+                if ((flags & NAVIGATING) != 0) {
+                    int j = entry * 3;
+                    for (int n = 0; n < count; n++) {
+                        a = ((flags & RESET_A) != 0 ? 0 : a) + plan.steps[j];
+                        b = ((flags & RESET_B) != 0 ? 0 : b) + plan.steps[j + 1];
+                        c = ((flags & RESET_C) != 0 ? 0 : c) + plan.steps[j + 2];
+                    }
+                    continue;
+                }
+                this.entry = entry;
+                element = plan.palette[entry];
+                matcher = plan.matchers[entry];
+                remaining = count;
+            }
+            remaining--;
+            index++;
+            return true;
+        }
+
+        private int readVarInt(byte[] runs) {
+            int value = 0;
+            for (int shift = 0;; shift += 7) {
+                byte b = runs[pos++];
+                value |= (b & 0x7f) << shift;
+                if (b >= 0) return value;
+            }
+        }
+    }
+}
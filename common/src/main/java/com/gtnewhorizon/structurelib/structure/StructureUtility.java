@@ -30,12 +30,14 @@ import net.minecraft.world.level.Level;
 import net.minecraft.world.level.block.Block;
 import net.minecraft.world.level.block.Blocks;
 import net.minecraft.world.level.block.entity.BlockEntity;
+import net.minecraft.world.level.block.state.BlockState;
 import net.minecraft.world.phys.BlockHitResult;
 import net.minecraft.world.phys.Vec3;
 import org.apache.commons.lang3.StringUtils;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.*;
 
 /**
@@ -56,6 +58,8 @@ import java.util.function.*;
  * <h2>Or Chain</h2> Provide a short-circuiting OR chain.
  * <ul>
  * <li>{@link #ofChain(IStructureElement[])} and its overloads</li>
+ * <li>{@link #ofChainAdaptive(IStructureElement[])} and its overloads: reorders itself to follow the actual block
+ * distribution</li>
  * </ul>
  * <h3>Side effect</h3> Provide callbacks on various occasion
  * <ul>
@@ -121,16 +125,42 @@ import java.util.function.*;
 public class StructureUtility {
 
     private static final String NICE_CHARS = "ABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789abcdefghijklmnopqrstuvwxyz=|!@#$%&()[]{};:<>/?_,.*^'`";
+    /**
+     * Default number of elements kept by {@link #deferCached(Function, Function)}.
+     */
+    private static final int DEFER_CACHE_SIZE = 64;
 
     @SuppressWarnings("rawtypes")
-    private static final Map<Vec3i, IStructureNavigate> STEP = new HashMap<>();
+    private static final Map<Vec3i, IStructureNavigate> STEP = new ConcurrentHashMap<>();
 
     @SuppressWarnings("rawtypes")
     private static final IStructureElement AIR = new StructureElement_Bridge() {
 
+        private final BlockStateSet accepted = BlockStateSet.of(BlockState::isAir);
+
         @Override
         public boolean check(Object t, Level world, int x, int y, int z) {
-            return world.getBlockState(new BlockPos(x, y, z)).isAir();
+            return check(t, new StructureBlockInfo(world, x, y, z));
+        }
+
+        @Override
+        public boolean check(Object t, StructureBlockInfo info) {
+            return info.getState().isAir();
+        }
+
+        @Override
+        public boolean isSnapshotSafe() {
+            return true;
+        }
+
+        @Override
+        public Predicate<BlockState> getAcceptedStates() {
+            return accepted;
+        }
+
+        @Override
+        public boolean isStateMatcher() {
+            return true;
         }
 
         @Override
@@ -159,9 +189,31 @@ public class StructureUtility {
     @SuppressWarnings("rawtypes")
     private static final IStructureElement NOT_AIR = new StructureElement_Bridge() {
 
+        private final BlockStateSet accepted = BlockStateSet.of(state -> !state.isAir());
+
         @Override
         public boolean check(Object t, Level world, int x, int y, int z) {
-            return !world.getBlockState(new BlockPos(x, y, z)).isAir();
+            return check(t, new StructureBlockInfo(world, x, y, z));
+        }
+
+        @Override
+        public boolean check(Object t, StructureBlockInfo info) {
+            return !info.getState().isAir();
+        }
+
+        @Override
+        public boolean isSnapshotSafe() {
+            return true;
+        }
+
+        @Override
+        public Predicate<BlockState> getAcceptedStates() {
+            return accepted;
+        }
+
+        @Override
+        public boolean isStateMatcher() {
+            return true;
         }
 
         @Override
@@ -198,11 +250,28 @@ public class StructureUtility {
     @SuppressWarnings("rawtypes")
     private static final IStructureElement ERROR = new StructureElement_Bridge() {
 
+        private final BlockStateSet accepted = BlockStateSet.of(state -> false);
+
         @Override
         public boolean check(Object t, Level world, int x, int y, int z) {
             return false;
         }
 
+        @Override
+        public boolean isSnapshotSafe() {
+            return true;
+        }
+
+        @Override
+        public Predicate<BlockState> getAcceptedStates() {
+            return accepted;
+        }
+
+        @Override
+        public boolean isStateMatcher() {
+            return true;
+        }
+
         @Override
         public boolean spawnHint(Object o, Level world, int x, int y, int z, ItemStack trigger) {
             StructureLibAPI.hintParticle(world, x, y, z, Blocks.AIR/*Registry.HINT_ERROR*/);
@@ -304,7 +373,7 @@ public class StructureUtility {
             ICustomBlockSetting block2 = (ICustomBlockSetting) block;
             block2.setBlock(world, x, y, z);
         } else {
-            world.setBlock(new BlockPos(x, y, z), block.defaultBlockState(), 2);
+            BlockPlacementBatch.setBlock(world, x, y, z, block.defaultBlockState());
         }
         return PlaceResult.ACCEPT;
     }
@@ -513,6 +582,9 @@ public class StructureUtility {
      * Note that if tierExtractor returns a null, this block will be rejected immediately. This makes null a potent
      * candidate for notSet.
      * <p>
+     * The result of tierExtractor is remembered for each block until tags are reloaded, so it must only depend on the
+     * block passed in.
+     * <p>
      * See documentation on the other overload for more information.
      *
      * @see #ofBlocksTiered(ITierConverter, Object, BiConsumer, Function)
@@ -522,29 +594,47 @@ public class StructureUtility {
         if (tierExtractor == null) throw new IllegalArgumentException();
         if (setter == null) throw new IllegalArgumentException();
         if (getter == null) throw new IllegalArgumentException();
+        ITierConverter<TIER> tiers = CachingTierConverter.of(tierExtractor);
 
-        return (t, world, x, y, z) -> {
-            Block block = world.getBlockState(new BlockPos(x, y, z)).getBlock();
-            TIER tier = tierExtractor.convert(block);
-            if (tier == null) return false;
-            TIER current = getter.apply(t);
-            if (Objects.equals(notSet, current)) {
-                if (Objects.equals(notSet, tier)) {
-                    if (StructureLib.PANIC_MODE) {
-                        throw new AssertionError("tierExtractor should never return notSet: " + notSet);
-                    } else {
-                        StructureLib.LOGGER.error("#########################################");
-                        StructureLib.LOGGER.error("#########################################");
-                        StructureLib.LOGGER
-                                .error("tierExtractor should never return notSet: {}", notSet, new Throwable());
-                        StructureLib.LOGGER.error("#########################################");
-                        StructureLib.LOGGER.error("#########################################");
+        return new IStructureElementCheckOnly<T>() {
+
+            private final BlockStateSet accepted = BlockStateSet
+                    .of(state -> tiers.convert(state.getBlock()) != null);
+
+            @Override
+            public boolean check(T t, Level world, int x, int y, int z) {
+                return check(t, new StructureBlockInfo(world, x, y, z));
+            }
+
+            @Override
+            public boolean check(T t, StructureBlockInfo info) {
+                Block block = info.getBlock();
+                TIER tier = tiers.convert(block);
+                if (tier == null) return false;
+                TIER current = getter.apply(t);
+                if (Objects.equals(notSet, current)) {
+                    if (Objects.equals(notSet, tier)) {
+                        if (StructureLib.PANIC_MODE) {
+                            throw new AssertionError("tierExtractor should never return notSet: " + notSet);
+                        } else {
+                            StructureLib.LOGGER.error("#########################################");
+                            StructureLib.LOGGER.error("#########################################");
+                            StructureLib.LOGGER
+                                    .error("tierExtractor should never return notSet: {}", notSet, new Throwable());
+                            StructureLib.LOGGER.error("#########################################");
+                            StructureLib.LOGGER.error("#########################################");
+                        }
                     }
+                    setter.accept(t, tier);
+                    return true;
                 }
-                setter.accept(t, tier);
-                return true;
+                return Objects.equals(current, tier);
+            }
+
+            @Override
+            public Predicate<BlockState> getAcceptedStates() {
+                return accepted;
             }
-            return Objects.equals(current, tier);
         };
     }
 
@@ -628,7 +718,8 @@ public class StructureUtility {
             Function<T, TIER> getter) {
         List<Block> hints = allKnownTiers == null ? Collections.emptyList() : allKnownTiers;
         if (hints.stream().anyMatch(Objects::isNull)) throw new IllegalArgumentException();
-        IStructureElementCheckOnly<T> check = ofBlocksTiered(tierExtractor, notSet, setter, getter);
+        ITierConverter<TIER> tiers = CachingTierConverter.of(tierExtractor);
+        IStructureElementCheckOnly<T> check = ofBlocksTiered(tiers, notSet, setter, getter);
         return new StructureElement_Bridge<T>() {
 
             @Override
@@ -636,6 +727,16 @@ public class StructureUtility {
                 return check.check(t, world, x, y, z);
             }
 
+            @Override
+            public boolean check(T t, StructureBlockInfo info) {
+                return check.check(t, info);
+            }
+
+            @Override
+            public Predicate<BlockState> getAcceptedStates() {
+                return check.getAcceptedStates();
+            }
+
             private Block getHint(ItemStack trigger) {
                 return hints.get(Math.min(Math.max(trigger.getCount(), 1), hints.size()) - 1);
             }
@@ -656,7 +757,7 @@ public class StructureUtility {
                     ICustomBlockSetting block = (ICustomBlockSetting) hint;
                     block.setBlock(world, x, y, z);
                 } else {
-                    world.setBlock(new BlockPos(x, y, z), hint.defaultBlockState(), 2);
+                    BlockPlacementBatch.setBlock(world, x, y, z, hint.defaultBlockState());
                 }
                 return true;
             }
@@ -674,9 +775,9 @@ public class StructureUtility {
                     AutoPlaceEnvironment env) {
                 Block hint = getHint(trigger);
                 if (hint == null) return PlaceResult.REJECT; // TODO or SKIP?
-                Block block = world.getBlockState(new BlockPos(x, y, z)).getBlock();
-                TIER tier = tierExtractor.convert(block);
-                if (Objects.equals(tier, tierExtractor.convert(hint)))
+                Block block = StructureBlockAccess.getBlockState(world, x, y, z).getBlock();
+                TIER tier = tiers.convert(block);
+                if (Objects.equals(tier, tiers.convert(hint)))
                     return PlaceResult.SKIP;
                 return StructureUtility.survivalPlaceBlock(
                         hint,
@@ -704,6 +805,7 @@ public class StructureUtility {
         return new StructureElement_Bridge<T>() {
 
             private Block block;
+            private final BlockStateSet accepted = BlockStateSet.of(state -> state.getBlock() == getBlock());
 
             private Block getBlock() {
                 if (block == null) block = net.minecraft.core.Registry.BLOCK.get(new ResourceLocation(modid, registryName));
@@ -712,7 +814,27 @@ public class StructureUtility {
 
             @Override
             public boolean check(T t, Level world, int x, int y, int z) {
-                return world.getBlockState(new BlockPos(x, y, z)).getBlock() == getBlock();
+                return check(t, new StructureBlockInfo(world, x, y, z));
+            }
+
+            @Override
+            public boolean check(T t, StructureBlockInfo info) {
+                return info.getBlock() == getBlock();
+            }
+
+            @Override
+            public boolean isSnapshotSafe() {
+                return true;
+            }
+
+            @Override
+            public Predicate<BlockState> getAcceptedStates() {
+                return accepted;
+            }
+
+            @Override
+            public boolean isStateMatcher() {
+                return true;
             }
 
             @Override
@@ -725,7 +847,7 @@ public class StructureUtility {
             @Override
             public boolean placeBlock(T t, Level world, int x, int y, int z, ItemStack trigger) {
                 if (getBlock() == null) return error().placeBlock(t, world, x, y, z, trigger);
-                world.setBlock(new BlockPos(x, y, z), getBlock().defaultBlockState(), 2);
+                BlockPlacementBatch.setBlock(world, x, y, z, getBlock().defaultBlockState());
                 return true;
             }
 
@@ -770,20 +892,30 @@ public class StructureUtility {
         return new IStructureElement<T>() {
 
             private Block block;
-            private boolean initialized;
+            // block is written before and read after this, so it is visible to all threads that see this set
+            private volatile boolean initialized;
 
             private boolean init() {
                 if (!initialized) {
-                    block = net.minecraft.core.Registry.BLOCK.get(new ResourceLocation(modid, registryName));
-                    initialized = true;
+                    synchronized (this) {
+                        if (!initialized) {
+                            block = net.minecraft.core.Registry.BLOCK.get(new ResourceLocation(modid, registryName));
+                            initialized = true;
+                        }
+                    }
                 }
                 return block != null;
             }
 
             @Override
             public boolean check(T t, Level world, int x, int y, int z) {
-                if (init()) return world.getBlockState(new BlockPos(x, y, z)).getBlock() != block;
-                else return fallback.check(t, world, x, y, z);
+                return check(t, new StructureBlockInfo(world, x, y, z));
+            }
+
+            @Override
+            public boolean check(T t, StructureBlockInfo info) {
+                if (init()) return info.getBlock() != block;
+                else return fallback.check(t, info);
             }
 
             @Override
@@ -797,7 +929,7 @@ public class StructureUtility {
             @Override
             public boolean placeBlock(T t, Level world, int x, int y, int z, ItemStack trigger) {
                 if (init()) {
-                    world.setBlock(new BlockPos(x, y, z), block.defaultBlockState(), 2);
+                    BlockPlacementBatch.setBlock(world, x, y, z, block.defaultBlockState());
                     return true;
                 } else return fallback.placeBlock(t, world, x, y, z, trigger);
             }
@@ -846,12 +978,34 @@ public class StructureUtility {
         }
         return new IStructureElementNoPlacement<T>() {
 
+            private final BlockStateSet accepted = BlockStateSet.of(state -> state.getBlock() == block);
+
             @Override
             public boolean check(T t, Level world, int x, int y, int z) {
-                Block worldBlock = world.getBlockState(new BlockPos(x, y, z)).getBlock();
+                return check(t, new StructureBlockInfo(world, x, y, z));
+            }
+
+            @Override
+            public boolean check(T t, StructureBlockInfo info) {
+                Block worldBlock = info.getBlock();
                 return block == worldBlock;
             }
 
+            @Override
+            public boolean isSnapshotSafe() {
+                return true;
+            }
+
+            @Override
+            public Predicate<BlockState> getAcceptedStates() {
+                return accepted;
+            }
+
+            @Override
+            public boolean isStateMatcher() {
+                return true;
+            }
+
             @Override
             public boolean spawnHint(T t, Level world, int x, int y, int z, ItemStack trigger) {
                 StructureLibAPI.hintParticle(world, x, y, z, hintBlock);
@@ -881,7 +1035,12 @@ public class StructureUtility {
 
             @Override
             public boolean check(T t, Level world, int x, int y, int z) {
-                Block worldBlock = world.getBlockState(new BlockPos(x, y, z)).getBlock();
+                return check(t, new StructureBlockInfo(world, x, y, z));
+            }
+
+            @Override
+            public boolean check(T t, StructureBlockInfo info) {
+                Block worldBlock = info.getBlock();
                 return iBlockAdder.apply(t, worldBlock);
             }
 
@@ -906,12 +1065,34 @@ public class StructureUtility {
         if (block instanceof ICustomBlockSetting) {
             return new IStructureElement<T>() {
 
+                private final BlockStateSet accepted = BlockStateSet.of(state -> state.getBlock() == block);
+
                 @Override
                 public boolean check(T t, Level world, int x, int y, int z) {
-                    Block worldBlock = world.getBlockState(new BlockPos(x, y, z)).getBlock();
+                    return check(t, new StructureBlockInfo(world, x, y, z));
+                }
+
+                @Override
+                public boolean check(T t, StructureBlockInfo info) {
+                    Block worldBlock = info.getBlock();
                     return block == worldBlock;
                 }
 
+                @Override
+                public boolean isSnapshotSafe() {
+                    return true;
+                }
+
+                @Override
+                public Predicate<BlockState> getAcceptedStates() {
+                    return accepted;
+                }
+
+                @Override
+                public boolean isStateMatcher() {
+                    return true;
+                }
+
                 @Override
                 public boolean placeBlock(T t, Level world, int x, int y, int z, ItemStack trigger) {
                     ((ICustomBlockSetting) defaultBlock).setBlock(world, x, y, z);
@@ -933,15 +1114,37 @@ public class StructureUtility {
         } else {
             return new IStructureElement<T>() {
 
+                private final BlockStateSet accepted = BlockStateSet.of(state -> state.getBlock() == block);
+
                 @Override
                 public boolean check(T t, Level world, int x, int y, int z) {
-                    Block worldBlock = world.getBlockState(new BlockPos(x, y, z)).getBlock();
+                    return check(t, new StructureBlockInfo(world, x, y, z));
+                }
+
+                @Override
+                public boolean check(T t, StructureBlockInfo info) {
+                    Block worldBlock = info.getBlock();
                     return block == worldBlock;
                 }
 
+                @Override
+                public boolean isSnapshotSafe() {
+                    return true;
+                }
+
+                @Override
+                public Predicate<BlockState> getAcceptedStates() {
+                    return accepted;
+                }
+
+                @Override
+                public boolean isStateMatcher() {
+                    return true;
+                }
+
                 @Override
                 public boolean placeBlock(T t, Level world, int x, int y, int z, ItemStack trigger) {
-                    world.setBlock(new BlockPos(x, y, z), defaultBlock.defaultBlockState(), 2);
+                    BlockPlacementBatch.setBlock(world, x, y, z, defaultBlock.defaultBlockState());
                     return true;
                 }
 
@@ -969,9 +1172,31 @@ public class StructureUtility {
 
     public static <T> IStructureElement<T> ofBlock(TagKey<Block> blockTag){
         return new IStructureElementNoPlacement<T>() {
+
+            private final BlockStateSet accepted = BlockStateSet.of(state -> state.is(blockTag));
             @Override
             public boolean check(T t, Level world, int x, int y, int z) {
-                return world.getBlockState(new BlockPos(x, y, z)).is(blockTag);
+                return check(t, new StructureBlockInfo(world, x, y, z));
+            }
+
+            @Override
+            public boolean check(T t, StructureBlockInfo info) {
+                return accepted.contains(info.getState());
+            }
+
+            @Override
+            public boolean isSnapshotSafe() {
+                return true;
+            }
+
+            @Override
+            public Predicate<BlockState> getAcceptedStates() {
+                return accepted;
+            }
+
+            @Override
+            public boolean isStateMatcher() {
+                return true;
             }
 
             @Override
@@ -983,9 +1208,31 @@ public class StructureUtility {
 
     public static <T> IStructureElement<T> ofBlock(TagKey<Block> blockTag, Block hint){
         return new IStructureElementNoPlacement<T>() {
+
+            private final BlockStateSet accepted = BlockStateSet.of(state -> state.is(blockTag));
             @Override
             public boolean check(T t, Level world, int x, int y, int z) {
-                return world.getBlockState(new BlockPos(x, y, z)).is(blockTag);
+                return check(t, new StructureBlockInfo(world, x, y, z));
+            }
+
+            @Override
+            public boolean check(T t, StructureBlockInfo info) {
+                return accepted.contains(info.getState());
+            }
+
+            @Override
+            public boolean isSnapshotSafe() {
+                return true;
+            }
+
+            @Override
+            public Predicate<BlockState> getAcceptedStates() {
+                return accepted;
+            }
+
+            @Override
+            public boolean isStateMatcher() {
+                return true;
             }
 
             @Override
@@ -1014,7 +1261,12 @@ public class StructureUtility {
 
                 @Override
                 public boolean check(T t, Level world, int x, int y, int z) {
-                    Block worldBlock = world.getBlockState(new BlockPos(x, y, z)).getBlock();
+                    return check(t, new StructureBlockInfo(world, x, y, z));
+                }
+
+                @Override
+                public boolean check(T t, StructureBlockInfo info) {
+                    Block worldBlock = info.getBlock();
                     return iBlockAdder.apply(t, worldBlock);
                 }
 
@@ -1034,7 +1286,7 @@ public class StructureUtility {
                 @Deprecated
                 public PlaceResult survivalPlaceBlock(T t, Level world, int x, int y, int z, ItemStack trigger,
                         AutoPlaceEnvironment env) {
-                    if (world.getBlockState(new BlockPos(x, y, z)).getBlock() == defaultBlock)
+                    if (StructureBlockAccess.getBlockState(world, x, y, z).getBlock() == defaultBlock)
                         return PlaceResult.SKIP;
                     return StructureUtility.survivalPlaceBlock(
                             defaultBlock,
@@ -1052,13 +1304,18 @@ public class StructureUtility {
 
                 @Override
                 public boolean check(T t, Level world, int x, int y, int z) {
-                    Block worldBlock = world.getBlockState(new BlockPos(x, y, z)).getBlock();
+                    return check(t, new StructureBlockInfo(world, x, y, z));
+                }
+
+                @Override
+                public boolean check(T t, StructureBlockInfo info) {
+                    Block worldBlock = info.getBlock();
                     return iBlockAdder.apply(t, worldBlock);
                 }
 
                 @Override
                 public boolean placeBlock(T t, Level world, int x, int y, int z, ItemStack trigger) {
-                    world.setBlock(new BlockPos(x, y, z), defaultBlock.defaultBlockState(), 2);
+                    BlockPlacementBatch.setBlock(world, x, y, z, defaultBlock.defaultBlockState());
                     return true;
                 }
 
@@ -1072,7 +1329,7 @@ public class StructureUtility {
                 @Deprecated
                 public PlaceResult survivalPlaceBlock(T t, Level world, int x, int y, int z, ItemStack trigger,
                         AutoPlaceEnvironment env) {
-                    if (world.getBlockState(new BlockPos(x, y, z)).getBlock() == defaultBlock)
+                    if (StructureBlockAccess.getBlockState(world, x, y, z).getBlock() == defaultBlock)
                         return PlaceResult.SKIP;
                     return StructureUtility.survivalPlaceBlock(
                             defaultBlock,
@@ -1104,7 +1361,12 @@ public class StructureUtility {
 
             @Override
             public boolean check(T t, Level world, int x, int y, int z) {
-                BlockEntity tileEntity = world.getBlockEntity(new BlockPos(x, y, z));
+                return check(t, new StructureBlockInfo(world, x, y, z));
+            }
+
+            @Override
+            public boolean check(T t, StructureBlockInfo info) {
+                BlockEntity tileEntity = info.getBlockEntity();
                 // This used to check if it's a GT tile. Since this is now an standalone mod we no longer do this
                 return iTileAdder.apply(t, tileEntity);
             }
@@ -1130,7 +1392,12 @@ public class StructureUtility {
 
             @Override
             public boolean check(T t, Level world, int x, int y, int z) {
-                BlockEntity tileEntity = world.getBlockEntity(new BlockPos(x, y, z));
+                return check(t, new StructureBlockInfo(world, x, y, z));
+            }
+
+            @Override
+            public boolean check(T t, StructureBlockInfo info) {
+                BlockEntity tileEntity = info.getBlockEntity();
                 // This used to check if it's a GT tile. Since this is now an standalone mod we no longer do this
                 return tileClass.isInstance(tileEntity) && iTileAdder.test(t, tileClass.cast(tileEntity));
             }
@@ -1168,6 +1435,15 @@ public class StructureUtility {
                 return check;
             }
 
+            @Override
+            public boolean check(T t, StructureBlockInfo info) {
+                boolean check = element.check(t, info);
+                if (check) {
+                    onCheckPass.accept(element, t, info.getWorld(), info.getX(), info.getY(), info.getZ());
+                }
+                return check;
+            }
+
             @Override
             public boolean placeBlock(T t, Level world, int x, int y, int z, ItemStack trigger) {
                 return element.placeBlock(t, world, x, y, z, trigger);
@@ -1229,6 +1505,15 @@ public class StructureUtility {
                 return check;
             }
 
+            @Override
+            public boolean check(T t, StructureBlockInfo info) {
+                boolean check = element.check(t, info);
+                if (!check) {
+                    onFail.accept(element, t, info.getWorld(), info.getX(), info.getY(), info.getZ());
+                }
+                return check;
+            }
+
             @Override
             public boolean placeBlock(T t, Level world, int x, int y, int z, ItemStack trigger) {
                 return element.placeBlock(t, world, x, y, z, trigger);
@@ -1292,6 +1577,17 @@ public class StructureUtility {
                 return check;
             }
 
+            @Override
+            public boolean check(T t, StructureBlockInfo info) {
+                boolean check = element.check(t, info);
+                if (!check) {
+                    onFail.accept(element, t, info.getWorld(), info.getX(), info.getY(), info.getZ());
+                } else {
+                    onPass.accept(element, t, info.getWorld(), info.getX(), info.getY(), info.getZ());
+                }
+                return check;
+            }
+
             @Override
             public boolean placeBlock(T t, Level world, int x, int y, int z, ItemStack trigger) {
                 return element.placeBlock(t, world, x, y, z, trigger);
@@ -1361,6 +1657,11 @@ public class StructureUtility {
                 return predicate.test(t) && downstream.check(t, world, x, y, z);
             }
 
+            @Override
+            public boolean check(T t, StructureBlockInfo info) {
+                return predicate.test(t) && downstream.check(t, info);
+            }
+
             @Override
             public boolean spawnHint(T t, Level world, int x, int y, int z, ItemStack trigger) {
                 return predicate.test(t) && downstream.spawnHint(t, world, x, y, z, trigger);
@@ -1435,7 +1736,46 @@ public class StructureUtility {
                 throw new IllegalArgumentException();
             }
         }
-        return () -> elementChain;
+        return new IStructureElementChain<T>() {
+
+            // compiled on first use. fallbacks never change, though the set itself follows tag reloads
+            private BlockStateSet accepted;
+            private boolean matcher;
+            private volatile boolean compiled;
+
+            @Override
+            public IStructureElement<T>[] fallbacks() {
+                return elementChain;
+            }
+
+            private void compile() {
+                Predicate<BlockState> predicate = IStructureElementChain.super.getAcceptedStates();
+                accepted = predicate == null ? null : BlockStateSet.of(predicate);
+                matcher = accepted != null && IStructureElementChain.super.isStateMatcher();
+                compiled = true;
+            }
+
+            @Override
+            public boolean check(T t, StructureBlockInfo info) {
+                if (!compiled) compile();
+                // a chain of pure block state matches is a single bit test instead of a call per fallback
+                if (matcher) return accepted.contains(info.getState());
+                return IStructureElementChain.super.check(t, info);
+            }
+
+            @Nullable
+            @Override
+            public Predicate<BlockState> getAcceptedStates() {
+                if (!compiled) compile();
+                return accepted;
+            }
+
+            @Override
+            public boolean isStateMatcher() {
+                if (!compiled) compile();
+                return matcher;
+            }
+        };
     }
 
     /**
@@ -1450,6 +1790,33 @@ public class StructureUtility {
         return ofChain(elementChain.toArray(new IStructureElement[0]));
     }
 
+    /**
+     * Same as {@link #ofChain(IStructureElement[])}, but during structure check the fallbacks that pass most often are
+     * tried first. Use this if the most common block is not first in the chain, e.g. a casing listed after several
+     * kinds of hatches.
+     * <p>
+     * The outcome of a check is never affected: only side effect free (i.e.
+     * {@linkplain IStructureElement#isSnapshotSafe() snapshot safe}) fallbacks are moved, and never across fallbacks
+     * with side effects such as block or tile adders. Hint, autoplace and survival build still use declaration order.
+     * <p>
+     * A chain made only of {@linkplain IStructureElement#isStateMatcher() state matchers} is already tested as a
+     * single set, so this returns a plain chain in that case.
+     */
+    @SafeVarargs
+    public static <T> IStructureElementChain<T> ofChainAdaptive(IStructureElement<T>... elementChain) {
+        IStructureElementChain<T> chain = ofChain(elementChain);
+        if (chain.isStateMatcher()) return chain;
+        return new AdaptiveStructureElementChain<>(elementChain);
+    }
+
+    /**
+     * Same as {@link #ofChainAdaptive(IStructureElement[])}.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> IStructureElementChain<T> ofChainAdaptive(List<IStructureElement<T>> elementChain) {
+        return ofChainAdaptive(elementChain.toArray(new IStructureElement[0]));
+    }
+
     // region context
 
     /**
@@ -1468,6 +1835,11 @@ public class StructureUtility {
                 return elem.check(t.getCurrentContext(), world, x, y, z);
             }
 
+            @Override
+            public boolean check(T t, StructureBlockInfo info) {
+                return elem.check(t.getCurrentContext(), info);
+            }
+
             @Override
             public boolean spawnHint(T t, Level world, int x, int y, int z, ItemStack trigger) {
                 return elem.spawnHint(t.getCurrentContext(), world, x, y, z, trigger);
@@ -1514,10 +1886,10 @@ public class StructureUtility {
     // region defer
 
     /**
-     * Similar to defer, but caches the first returned element returned and won't call it again. Initialization is not
-     * thread safe. These both allow the structure element **constructor** to access properties only present on the
-     * context object (e.g. GT5 multiblock controller), e.g. hatch texture index to use. Use `lazy` if the data you
-     * access will remain constant across different context object.
+     * Similar to defer, but caches the first returned element returned and won't call it again. Initialization is
+     * thread safe, the supplier is called exactly once. These both allow the structure element **constructor** to
+     * access properties only present on the context object (e.g. GT5 multiblock controller), e.g. hatch texture index
+     * to use. Use `lazy` if the data you access will remain constant across different context object.
      */
     public static <T> IStructureElementDeferred<T> lazy(Supplier<IStructureElement<T>> to) {
         if (to == null) {
@@ -1530,10 +1902,10 @@ public class StructureUtility {
      * This will defer the actual instantiation of structure element until the <b>first time</b> structure code is
      * actually called.
      * <p>
-     * Similar to defer, but caches the first returned element returned and won't call it again. Initialization is not
-     * thread safe. This will allow the structure element <b>constructor</b> to access properties only present on the
-     * context object (e.g. GT5 multiblock controller), e.g. hatch texture index to use. Use this if the data you access
-     * will remain constant.
+     * Similar to defer, but caches the first returned element returned and won't call it again. Initialization is
+     * thread safe, the function is called exactly once. This will allow the structure element <b>constructor</b> to
+     * access properties only present on the context object (e.g. GT5 multiblock controller), e.g. hatch texture index
+     * to use. Use this if the data you access will remain constant.
      *
      * @param to create structure element from the first context object passed in
      */
@@ -1565,6 +1937,11 @@ public class StructureUtility {
                 return to.get().check(t, world, x, y, z);
             }
 
+            @Override
+            public boolean check(T t, StructureBlockInfo info) {
+                return to.get().check(t, info);
+            }
+
             @Override
             public boolean placeBlock(T t, Level world, int x, int y, int z, ItemStack trigger) {
                 return to.get().placeBlock(t, world, x, y, z, trigger);
@@ -1628,6 +2005,11 @@ public class StructureUtility {
                 return to.apply(t).check(t, world, x, y, z);
             }
 
+            @Override
+            public boolean check(T t, StructureBlockInfo info) {
+                return to.apply(t).check(t, info);
+            }
+
             @Override
             public boolean placeBlock(T t, Level world, int x, int y, int z, ItemStack trigger) {
                 return to.apply(t).placeBlock(t, world, x, y, z, trigger);
@@ -1669,6 +2051,56 @@ public class StructureUtility {
         };
     }
 
+    /**
+     * Similar to {@link #defer(Function)}, but only creates a structure element once per key, and reuses it for every
+     * later call with an equal key. Use this in place of defer when the element only depends on a few properties of the
+     * context object, e.g. tier or mode, so that the element is not rebuilt on every structure check.
+     * <p>
+     * Up to 64 elements are kept, the least recently used ones are discarded first. Keys must
+     * not be null, and must have proper equals and hashCode. The factory must not return null.
+     *
+     * @param keyExtractor extract a key from the context object
+     * @param to           create structure element from the key. must only depend on the key.
+     */
+    public static <T, K> IStructureElementDeferred<T> deferCached(Function<T, K> keyExtractor,
+            Function<? super K, IStructureElement<T>> to) {
+        return deferCached(keyExtractor, to, DEFER_CACHE_SIZE);
+    }
+
+    /**
+     * Same as {@link #deferCached(Function, Function)}, but with a custom cache size.
+     *
+     * @param keyExtractor extract a key from the context object
+     * @param to           create structure element from the key. must only depend on the key.
+     * @param maximumSize  maximum number of elements to keep
+     */
+    public static <T, K> IStructureElementDeferred<T> deferCached(Function<T, K> keyExtractor,
+            Function<? super K, IStructureElement<T>> to, int maximumSize) {
+        if (keyExtractor == null || to == null || maximumSize <= 0) {
+            throw new IllegalArgumentException();
+        }
+        return new CachingStructureElement<>(keyExtractor, to, maximumSize, false);
+    }
+
+    /**
+     * Similar to {@link #deferCached(Function, Function)}, but keys are compared by identity and only weakly
+     * referenced. Use this if the key is an object that should not be kept alive by the structure definition, e.g. the
+     * context object itself or something owned by it. The element is then created once per such object, and discarded
+     * once the object is garbage collected.
+     * <p>
+     * Up to 64 elements are kept, the least recently used ones are discarded first.
+     *
+     * @param keyExtractor extract a key from the context object
+     * @param to           create structure element from the key. must only depend on the key.
+     */
+    public static <T, K> IStructureElementDeferred<T> deferCachedWeak(Function<T, K> keyExtractor,
+            Function<? super K, IStructureElement<T>> to) {
+        if (keyExtractor == null || to == null) {
+            throw new IllegalArgumentException();
+        }
+        return new CachingStructureElement<>(keyExtractor, to, DEFER_CACHE_SIZE, true);
+    }
+
     /**
      * This is the switch block for structure code.
      * <p>
@@ -1774,6 +2206,11 @@ public class StructureUtility {
                 return to.apply(t, ItemStack.EMPTY).check(t, world, x, y, z);
             }
 
+            @Override
+            public boolean check(T t, StructureBlockInfo info) {
+                return to.apply(t, ItemStack.EMPTY).check(t, info);
+            }
+
             @Override
             public boolean placeBlock(T t, Level world, int x, int y, int z, ItemStack trigger) {
                 return to.apply(t, trigger).placeBlock(t, world, x, y, z, trigger);
@@ -1905,13 +2342,12 @@ public class StructureUtility {
     }
 
     /**
-     * This will defer the actual instantiation of structure element until the <b>first time</b> structure code is
-     * actually called.
+     * This will defer the actual instantiation of structure element until the structure code is actually called. This
+     * will allow the structure element <b>constructor</b> to access properties only present on the context object (e.g.
+     * GT5 multiblock controller), e.g. hatch texture index to use.
      * <p>
-     * Similar to defer, but caches the first returned element returned and won't call it again. Initialization is not
-     * thread safe. This will allow the structure element <b>constructor</b> to access properties only present on the
-     * context object (e.g. GT5 multiblock controller), e.g. hatch texture index to use. Use this if the data you access
-     * will remain constant.
+     * Nothing is cached, both functions are called again every time the returned element is used. Wrap them yourself
+     * or use {@link #lazy(Function)} if the result will remain constant.
      * <p>
      * This variant will override the check function of the structure element from second function with the one returned
      * from the structure element from first function.
@@ -1931,6 +2367,11 @@ public class StructureUtility {
                 return toCheck.apply(t).check(t, world, x, y, z);
             }
 
+            @Override
+            public boolean check(T t, StructureBlockInfo info) {
+                return toCheck.apply(t).check(t, info);
+            }
+
             @Override
             public boolean placeBlock(T t, Level world, int x, int y, int z, ItemStack trigger) {
                 return to.apply(t, trigger).placeBlock(t, world, x, y, z, trigger);
@@ -2084,6 +2525,26 @@ public class StructureUtility {
                 return backing.check(t, world, x, y, z);
             }
 
+            @Override
+            public boolean check(T t, StructureBlockInfo info) {
+                return backing.check(t, info);
+            }
+
+            @Override
+            public boolean isSnapshotSafe() {
+                return backing.isSnapshotSafe();
+            }
+
+            @Override
+            public Predicate<BlockState> getAcceptedStates() {
+                return backing.getAcceptedStates();
+            }
+
+            @Override
+            public boolean isStateMatcher() {
+                return backing.isStateMatcher();
+            }
+
             public boolean spawnHint(T t, Level world, int x, int y, int z, ItemStack trigger) {
                 ItemStack newTrigger = ChannelDataAccessor.withChannel(trigger, channel);
                 // We know spawnHint will only be called on client side, so the lack of player isn't quite an issue
@@ -2282,7 +2743,7 @@ public class StructureUtility {
                 ((w, x, y, z) -> {
                     BlockEntity tileEntity = w.getBlockEntity(new BlockPos(x, y, z));
                     if (tileEntity == null) {
-                        Block block = w.getBlockState(new BlockPos(x, y, z)).getBlock();
+                        Block block = StructureBlockAccess.getBlockState(w, x, y, z).getBlock();
                         if (block != null && block != Blocks.AIR) {
                             blocks.add(block);
                         }
@@ -2347,7 +2808,7 @@ public class StructureUtility {
                     ((w, x, y, z) -> {
                         BlockEntity tileEntity = w.getBlockEntity(new BlockPos(x, y, z));
                         if (tileEntity == null) {
-                            Block block = w.getBlockState(new BlockPos(x, y, z)).getBlock();
+                            Block block = StructureBlockAccess.getBlockState(w, x, y, z).getBlock();
                             if (block != null && block != Blocks.AIR) {
                                 builder.append(
                                         map.get(
@@ -2388,7 +2849,7 @@ public class StructureUtility {
                     ((w, x, y, z) -> {
                         BlockEntity tileEntity = w.getBlockEntity(new BlockPos(x, y, z));
                         if (tileEntity == null) {
-                            Block block = w.getBlockState(new BlockPos(x, y, z)).getBlock();
+                            Block block = StructureBlockAccess.getBlockState(w, x, y, z).getBlock();
                             if (block != null && block != Blocks.AIR) {
                                 builder.append(
                                         map.get(
@@ -2415,81 +2876,256 @@ public class StructureUtility {
         return (builder.toString().replaceAll("\"\"", "E"));
     }
 
-    static <T> boolean iterateV2(IStructureElement<T>[] elements, Level world, ExtendedFacing extendedFacing,
-            int basePositionX, int basePositionY, int basePositionZ, int basePositionA, int basePositionB,
-            int basePositionC, IStructureWalker<T> predicate, String iterateType) {
+    static <T> boolean iterateV2(StructurePlan<T> plan, Level world, int basePositionX, int basePositionY,
+            int basePositionZ, int basePositionA, int basePositionB, int basePositionC, IStructureWalker<T> predicate,
+            String iterateType) {
         // change base position to base offset
-        basePositionA = -basePositionA;
-        basePositionB = -basePositionB;
-        basePositionC = -basePositionC;
-
-        int[] abc = new int[] { basePositionA, basePositionB, basePositionC };
-        int[] xyz = new int[3];
+        int[] baseOffset = new int[3];
+        plan.getFacing().getLevelOffset(new int[] { -basePositionA, -basePositionB, -basePositionC }, baseOffset);
+        int offsetX = basePositionX + baseOffset[0];
+        int offsetY = basePositionY + baseOffset[1];
+        int offsetZ = basePositionZ + baseOffset[2];
+
+        StructureBlockAccess.begin(world);
+        try {
+            boolean failed = false;
+            StructurePlan.Cursor<T> cursor = new StructurePlan.Cursor<T>().reset(plan);
+            while (cursor.next()) {
+                if (!visitV2(
+                        plan,
+                        cursor,
+                        world,
+                        offsetX,
+                        offsetY,
+                        offsetZ,
+                        basePositionX,
+                        basePositionY,
+                        basePositionZ,
+                        basePositionA,
+                        basePositionB,
+                        basePositionC,
+                        predicate,
+                        iterateType))
+                    failed = true;
+            }
+            return !failed;
+        } finally {
+            StructureBlockAccess.end();
+        }
+    }
 
-        boolean failed = false;
-        for (IStructureElement<T> element : elements) {
-            if (element.isNavigating()) {
-                abc[0] = (element.resetA() ? basePositionA : abc[0]) + element.getStepA();
-                abc[1] = (element.resetB() ? basePositionB : abc[1]) + element.getStepB();
-                abc[2] = (element.resetC() ? basePositionC : abc[2]) + element.getStepC();
-            } else {
-                extendedFacing.getLevelOffset(abc, xyz);
-                xyz[0] += basePositionX;
-                xyz[1] += basePositionY;
-                xyz[2] += basePositionZ;
+    /**
+     * Same as {@link #iterateV2(StructurePlan, Level, int, int, int, int, int, int, IStructureWalker, String)}, but
+     * start at given element, wrap around at the end of the plan, and stop at the first element the walker returns false
+     * for.
+     *
+     * @param start index of the element to start at, as returned by a previous call
+     * @return index of the element the walker stopped at, or -1 if it walked all elements
+     */
+    static <T> int iterateV2(StructurePlan<T> plan, Level world, int basePositionX, int basePositionY,
+            int basePositionZ, int basePositionA, int basePositionB, int basePositionC, IStructureWalker<T> predicate,
+            String iterateType, int start) {
+        // change base position to base offset
+        int[] baseOffset = new int[3];
+        plan.getFacing().getLevelOffset(new int[] { -basePositionA, -basePositionB, -basePositionC }, baseOffset);
+        int offsetX = basePositionX + baseOffset[0];
+        int offsetY = basePositionY + baseOffset[1];
+        int offsetZ = basePositionZ + baseOffset[2];
+
+        if (start < 0 || start >= plan.size()) start = 0;
+        StructureBlockAccess.begin(world);
+        try {
+            StructurePlan.Cursor<T> cursor = new StructurePlan.Cursor<T>().reset(plan);
+            // skip to start, then wrap around to visit the elements before it
+            while (cursor.index + 1 < start) cursor.next();
+            for (int n = 0; n < plan.size(); n++) {
+                if (!cursor.next()) {
+                    cursor.reset(plan);
+                    cursor.next();
+                }
+                if (!visitV2(
+                        plan,
+                        cursor,
+                        world,
+                        offsetX,
+                        offsetY,
+                        offsetZ,
+                        basePositionX,
+                        basePositionY,
+                        basePositionZ,
+                        basePositionA,
+                        basePositionB,
+                        basePositionC,
+                        predicate,
+                        iterateType))
+                    return cursor.index;
+            }
+            return -1;
+        } finally {
+            StructureBlockAccess.end();
+        }
+    }
 
-                if (StructureLibAPI.isDebugEnabled()) StructureLib.LOGGER.info(
-                        "Multi [{}, {}, {}] {} step @ {} {}",
+    /**
+     * Visit the element of given plan the cursor is at.
+     *
+     * @return false if the walker returned false
+     */
+    private static <T> boolean visitV2(StructurePlan<T> plan, StructurePlan.Cursor<T> cursor, Level world,
+            int offsetX, int offsetY, int offsetZ, int basePositionX, int basePositionY, int basePositionZ,
+            int basePositionA, int basePositionB, int basePositionC, IStructureWalker<T> predicate,
+            String iterateType) {
+        IStructureElement<T> element = cursor.element;
+        int pa = cursor.a, pb = cursor.b, pc = cursor.c;
+        int x = plan.x(pa, pb, pc) + offsetX, y = plan.y(pa, pb, pc) + offsetY, z = plan.z(pa, pb, pc) + offsetZ;
+        int a = pa - basePositionA, b = pb - basePositionB, c = pc - basePositionC;
+
+        if (StructureLibAPI.isDebugEnabled()) StructureLib.LOGGER.info(
+                "Multi [{}, {}, {}] {} step @ [{}, {}, {}] [{}, {}, {}]",
+                basePositionX,
+                basePositionY,
+                basePositionZ,
+                iterateType,
+                x,
+                y,
+                z,
+                a,
+                b,
+                c);
+
+        if (StructureBlockAccess.isLoaded(world, x, y, z)) {
+            if (StructureLibAPI.isInstrumentEnabled()) {
+                StructureElementVisitedEvent.fireEvent(world, x, y, z, pa, pb, pc, element);
+            }
+            if (!predicate.visit(element, world, x, y, z, a, b, c)) {
+                if (StructureLibAPI.isDebugEnabled()) {
+                    StructureLib.LOGGER.info(
+                            "Multi [{}, {}, {}] {} stop @ [{}, {}, {}] [{}, {}, {}]",
+                            basePositionX,
+                            basePositionY,
+                            basePositionZ,
+                            iterateType,
+                            x,
+                            y,
+                            z,
+                            a,
+                            b,
+                            c);
+                }
+                return false;
+            }
+        } else {
+            if (StructureLibAPI.isDebugEnabled()) {
+                StructureLib.LOGGER.info(
+                        "Multi [{}, {}, {}] {} !blockExists @ [{}, {}, {}] [{}, {}, {}]",
                         basePositionX,
                         basePositionY,
                         basePositionZ,
                         iterateType,
-                        Arrays.toString(xyz),
-                        Arrays.toString(abc));
-
-                if (world.isLoaded(new BlockPos(xyz[0], xyz[1], xyz[2]))) {
-                    if (StructureLibAPI.isInstrumentEnabled()) {
-                        StructureElementVisitedEvent.fireEvent(
-                                world,
-                                xyz[0],
-                                xyz[1],
-                                xyz[2],
-                                abc[0] - basePositionA,
-                                abc[1] - basePositionB,
-                                abc[2] - basePositionC,
-                                element);
+                        x,
+                        y,
+                        z,
+                        a,
+                        b,
+                        c);
+            }
+            return predicate.blockNotLoaded(element, world, x, y, z, a, b, c);
+        }
+        return true;
+    }
+
+    /**
+     * Specialized version of {@link #iterateV2(StructurePlan, Level, int, int, int, int, int, int, IStructureWalker, String)}
+     * for structure checks. Does not allocate anything on its own, unless debug or instrumentation is enabled. Visited
+     * elements are recorded into given buffer so that caller can replay the success or fail callbacks.
+     *
+     * @param forceCheckAll if true, an element in not loaded chunk fails the check. Otherwise, it is skipped.
+     * @param failFast      if true, return on first failing element. Elements after that are neither visited nor
+     *                      recorded.
+     */
+    static <T> boolean checkV2(StructurePlan<T> plan, T object, Level world, int basePositionX, int basePositionY,
+            int basePositionZ, int basePositionA, int basePositionB, int basePositionC, boolean forceCheckAll,
+            boolean failFast, CheckBuffer buffer) {
+        // change base position to base offset
+        int[] baseOffset = buffer.out;
+        buffer.in[0] = -basePositionA;
+        buffer.in[1] = -basePositionB;
+        buffer.in[2] = -basePositionC;
+        plan.getFacing().getLevelOffset(buffer.in, baseOffset);
+        int offsetX = basePositionX + baseOffset[0];
+        int offsetY = basePositionY + baseOffset[1];
+        int offsetZ = basePositionZ + baseOffset[2];
+
+        StructurePlan.Cursor<T> cursor = buffer.cursor(plan);
+
+        StructureBlockAccess.begin(world);
+        try {
+            // visiting elements has no side effects besides those replayed from buffer if they are snapshot safe,
+            // so rejecting early does not change the outcome
+            if (plan.hasProbes() && (failFast || plan.isSnapshotSafe())
+                    && !StructureLibAPI.isInstrumentEnabled()
+                    && plan.quickReject(world, offsetX, offsetY, offsetZ)) {
+                if (StructureLibAPI.isDebugEnabled()) StructureLib.LOGGER
+                        .info("Multi [{}, {}, {}] check quick reject", basePositionX, basePositionY, basePositionZ);
+                if (!failFast) {
+                    // a full check would have recorded every loaded position
+                    while (cursor.next()) {
+                        int a = cursor.a, b = cursor.b, c = cursor.c;
+                        int x = plan.x(a, b, c) + offsetX, y = plan.y(a, b, c) + offsetY,
+                                z = plan.z(a, b, c) + offsetZ;
+                        if (StructureBlockAccess.isLoaded(world, x, y, z)) buffer.add(cursor.element, x, y, z);
                     }
-                    if (!predicate.visit(element, world, xyz[0], xyz[1], xyz[2], abc[0], abc[1], abc[2])) {
-                        if (StructureLibAPI.isDebugEnabled()) {
-                            StructureLib.LOGGER.info(
-                                    "Multi [{}, {}, {}] {} stop @ {} {}",
-                                    basePositionX,
-                                    basePositionY,
-                                    basePositionZ,
-                                    iterateType,
-                                    Arrays.toString(xyz),
-                                    Arrays.toString(abc));
-                        }
+                }
+                return false;
+            }
+            boolean failed = false;
+            while (cursor.next()) {
+                IStructureElement<T> element = cursor.element;
+                int a = cursor.a, b = cursor.b, c = cursor.c;
+                int x = plan.x(a, b, c) + offsetX, y = plan.y(a, b, c) + offsetY, z = plan.z(a, b, c) + offsetZ;
+
+                if (!StructureBlockAccess.isLoaded(world, x, y, z)) {
+                    if (StructureLibAPI.isDebugEnabled()) StructureLib.LOGGER.info(
+                            "Multi [{}, {}, {}] check !blockExists @ [{}, {}, {}]",
+                            basePositionX,
+                            basePositionY,
+                            basePositionZ,
+                            x,
+                            y,
+                            z);
+                    if (forceCheckAll) {
+                        if (failFast) return false;
                         failed = true;
                     }
-                } else {
-                    if (StructureLibAPI.isDebugEnabled()) {
-                        StructureLib.LOGGER.info(
-                                "Multi [{}, {}, {}] {} !blockExists @ {} {}",
-                                basePositionX,
-                                basePositionY,
-                                basePositionZ,
-                                iterateType,
-                                Arrays.toString(xyz),
-                                Arrays.toString(abc));
-                    }
-                    if (!predicate.blockNotLoaded(element, world, xyz[0], xyz[1], xyz[2], abc[0], abc[1], abc[2]))
-                       failed = true;
+                    continue;
+                }
+                if (StructureLibAPI.isInstrumentEnabled()) {
+                    StructureElementVisitedEvent.fireEvent(world, x, y, z, a, b, c, element);
+                }
+                BlockStateSet matcher = cursor.matcher;
+                boolean passed = matcher != null
+                        ? matcher.contains(StructureBlockAccess.getBlockState(world, x, y, z))
+                        : element.check(object, buffer.info.set(world, x, y, z));
+                if (!passed) {
+                    if (StructureLibAPI.isDebugEnabled()) StructureLib.LOGGER.info(
+                            "Multi [{}, {}, {}] check stop @ [{}, {}, {}]",
+                            basePositionX,
+                            basePositionY,
+                            basePositionZ,
+                            x,
+                            y,
+                            z);
+                    buffer.add(element, x, y, z);
+                    if (failFast) return false;
+                    failed = true;
+                    continue;
                 }
-                abc[0] += 1;
+                buffer.add(element, x, y, z);
             }
+            return !failed;
+        } finally {
+            StructureBlockAccess.end();
         }
-        return !failed;
     }
 
     public static void iterate(Level world, ExtendedFacing extendedFacing, int basePositionX, int basePositionY,
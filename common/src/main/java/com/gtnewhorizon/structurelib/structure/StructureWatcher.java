@@ -0,0 +1,167 @@
+package com.gtnewhorizon.structurelib.structure;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import com.gtnewhorizon.structurelib.alignment.enumerable.ExtendedFacing;
+import net.minecraft.core.BlockPos;
+import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.level.Level;
+import net.minecraft.world.level.LevelAccessor;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Opt-in replacement for polling {@link IStructureDefinition#check} periodically.
+ * <p>
+ * Once a structure is formed, register its footprint using
+ * {@link #watch(IStructureDefinition, String, Level, ExtendedFacing, int, int, int, int, int, int, Consumer) watch()}.
+ * The returned {@link Watch} becomes dirty as soon as any block inside the footprint changes, at which point the
+ * controller should run a full check again and register a new watch if the structure is still formed. The watch also
+ * becomes dirty when any chunk it covers unloads, as nothing can be known about blocks in unloaded chunks.
+ * <p>
+ * Only block changes are tracked. If your elements depend on anything else, e.g. the content of a block entity, you
+ * still need to check it yourself.
+ * <p>
+ * All methods of this class must be called on the server thread. Client side worlds are not supported.
+ */
+public final class StructureWatcher {
+
+    /**
+     * Not weak, as each watch references its world. Entries are dropped on world unload instead.
+     */
+    private static final Map<Level, FootprintIndex<Watch>> INDICES = new HashMap<>();
+
+    private StructureWatcher() {}
+
+    /**
+     * A registered structure footprint.
+     */
+    public static final class Watch extends FootprintIndex.Footprint {
+
+        private final Level world;
+        @Nullable
+        private final Consumer<Watch> listener;
+        private boolean dirty;
+
+        private Watch(Level world, long[] positions, @Nullable Consumer<Watch> listener) {
+            super(positions);
+            this.world = world;
+            this.listener = listener;
+        }
+
+        public Level getWorld() {
+            return world;
+        }
+
+        /**
+         * @return true if any block inside the footprint changed, any chunk it covers unloaded, or this watch has been
+         *         cancelled.
+         */
+        public boolean isDirty() {
+            return dirty;
+        }
+
+        /**
+         * Stop watching. This watch will be dirty from now on.
+         */
+        public void cancel() {
+            if (dirty) return;
+            dirty = true;
+            FootprintIndex<Watch> index = INDICES.get(world);
+            if (index != null) index.remove(this);
+        }
+
+        private void invalidate() {
+            if (dirty) return;
+            dirty = true;
+            if (listener != null) listener.accept(this);
+        }
+    }
+
+    /**
+     * Watch the footprint of given structure piece.
+     *
+     * @param definition     the structure definition
+     * @param piece          the structure piece's string identifier.
+     * @param world          the world object the structure is in. must not be client side.
+     * @param extendedFacing the current structure's orientation.
+     * @param basePositionX  X location of the structure
+     * @param basePositionY  Y location of the structure
+     * @param basePositionZ  Z location of the structure
+     * @param basePositionA  see {@link IStructureDefinition} class javadoc
+     * @param basePositionB  see {@link IStructureDefinition} class javadoc
+     * @param basePositionC  see {@link IStructureDefinition} class javadoc
+     * @param listener       called once when the watch becomes dirty for reason other than being cancelled. can be
+     *                       null. called from within block change, so do not modify the world from there.
+     * @return the watch. remember to cancel it when the controller is removed or the structure is checked again.
+     */
+    public static <T> Watch watch(IStructureDefinition<T> definition, String piece, Level world,
+            ExtendedFacing extendedFacing, int basePositionX, int basePositionY, int basePositionZ, int basePositionA,
+            int basePositionB, int basePositionC, @Nullable Consumer<Watch> listener) {
+        long[] positions = definition.getPlanFor(piece, extendedFacing).toLevelPositions(
+                basePositionX,
+                basePositionY,
+                basePositionZ,
+                basePositionA,
+                basePositionB,
+                basePositionC);
+        return watch(world, positions, listener);
+    }
+
+    /**
+     * Watch an arbitrary set of positions.
+     *
+     * @param world     the world object the positions are in. must not be client side.
+     * @param positions positions as per {@link BlockPos#asLong(int, int, int)}. will be copied.
+     * @param listener  called once when the watch becomes dirty for reason other than being cancelled. can be null.
+     * @return the watch
+     */
+    public static Watch watch(Level world, long[] positions, @Nullable Consumer<Watch> listener) {
+        if (world.isClientSide) throw new IllegalArgumentException("client side world");
+        Watch watch = new Watch(world, positions, listener);
+        INDICES.computeIfAbsent(world, w -> new FootprintIndex<>()).add(watch);
+        return watch;
+    }
+
+    // region platform hooks
+
+    /**
+     * Called by platform code whenever a block changed. Not a stable API.
+     */
+    public static void onBlockChanged(Level world, BlockPos pos) {
+        if (world.isClientSide || INDICES.isEmpty()) return;
+        FootprintIndex<Watch> index = INDICES.get(world);
+        if (index == null) return;
+        List<Watch> hits = index.getAt(pos.getX(), pos.getY(), pos.getZ());
+        if (hits.isEmpty()) return;
+        for (Watch watch : hits) {
+            // a dirty watch will never become clean again, so stop tracking it right away
+            index.remove(watch);
+            watch.invalidate();
+        }
+    }
+
+    /**
+     * Called by platform code whenever a chunk unloaded. Not a stable API.
+     */
+    public static void onChunkUnload(LevelAccessor world, ChunkPos pos) {
+        if (world.isClientSide() || INDICES.isEmpty()) return;
+        FootprintIndex<Watch> index = INDICES.get(world);
+        if (index == null) return;
+        for (Watch watch : index.removeChunk(pos.toLong())) {
+            watch.invalidate();
+        }
+    }
+
+    /**
+     * Called by platform code whenever a world unloaded. Not a stable API.
+     */
+    public static void onLevelUnload(LevelAccessor world) {
+        if (world.isClientSide()) return;
+        INDICES.remove(world);
+    }
+
+    // endregion
+}
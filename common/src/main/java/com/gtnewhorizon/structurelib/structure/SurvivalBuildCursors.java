@@ -0,0 +1,159 @@
+package com.gtnewhorizon.structurelib.structure;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.WeakHashMap;
+
+import com.gtnewhorizon.structurelib.alignment.enumerable.ExtendedFacing;
+import net.minecraft.world.entity.player.Player;
+
+/**
+ * Remembers where the last survival build of each player on each context object stopped, so that the next build
+ * resumes there instead of walking past all the elements that are done already.
+ * <p>
+ * Cursors are kept per definition, piece, facing and base position, so that structures built from several pieces,
+ * e.g. a main piece and layers at other base offsets, resume each piece on its own. A cursor is not found anymore once
+ * any of these change, e.g. when the controller is rotated or moved. It also expires after {@link #EXPIRY_TICKS}
+ * server ticks. Resumed walks wrap around the end of the piece, so gaps before the cursor, e.g. from blocks broken in
+ * the meantime, are still filled, only later.
+ * <p>
+ * Context objects are only weakly referenced. All methods of this class must be called on the server thread.
+ */
+final class SurvivalBuildCursors {
+
+    private static final long EXPIRY_TICKS = 20 * 60 * 5;
+    private static final Map<Object, Map<UUID, Map<Key, Cursor>>> CURSORS = new WeakHashMap<>();
+
+    private SurvivalBuildCursors() {}
+
+    private static final class Key {
+
+        private final IStructureDefinition<?> definition;
+        private final String piece;
+        private final ExtendedFacing facing;
+        private final int basePositionX, basePositionY, basePositionZ, basePositionA, basePositionB, basePositionC;
+
+        private Key(IStructureDefinition<?> definition, String piece, ExtendedFacing facing, int basePositionX,
+                int basePositionY, int basePositionZ, int basePositionA, int basePositionB, int basePositionC) {
+            this.definition = definition;
+            this.piece = piece;
+            this.facing = facing;
+            this.basePositionX = basePositionX;
+            this.basePositionY = basePositionY;
+            this.basePositionZ = basePositionZ;
+            this.basePositionA = basePositionA;
+            this.basePositionB = basePositionB;
+            this.basePositionC = basePositionC;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key key = (Key) o;
+            return definition == key.definition && facing == key.facing
+                    && piece.equals(key.piece)
+                    && basePositionX == key.basePositionX
+                    && basePositionY == key.basePositionY
+                    && basePositionZ == key.basePositionZ
+                    && basePositionA == key.basePositionA
+                    && basePositionB == key.basePositionB
+                    && basePositionC == key.basePositionC;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = System.identityHashCode(definition);
+            result = 31 * result + piece.hashCode();
+            result = 31 * result + facing.hashCode();
+            result = 31 * result + basePositionX;
+            result = 31 * result + basePositionY;
+            result = 31 * result + basePositionZ;
+            result = 31 * result + basePositionA;
+            result = 31 * result + basePositionB;
+            result = 31 * result + basePositionC;
+            return result;
+        }
+    }
+
+    private static final class Cursor {
+
+        private final int index;
+        private final long expiresAt;
+
+        private Cursor(int index, long expiresAt) {
+            this.index = index;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    /**
+     * @return index of the element to resume at, or 0 if there is no valid cursor
+     */
+    static int get(Object object, Player actor, IStructureDefinition<?> definition, String piece,
+            ExtendedFacing facing, int basePositionX, int basePositionY, int basePositionZ, int basePositionA,
+            int basePositionB, int basePositionC) {
+        if (object == null || actor == null) return 0;
+        Map<UUID, Map<Key, Cursor>> players = CURSORS.get(object);
+        if (players == null) return 0;
+        Map<Key, Cursor> cursors = players.get(actor.getUUID());
+        if (cursors == null) return 0;
+        Key key = new Key(
+                definition,
+                piece,
+                facing,
+                basePositionX,
+                basePositionY,
+                basePositionZ,
+                basePositionA,
+                basePositionB,
+                basePositionC);
+        Cursor cursor = cursors.get(key);
+        if (cursor == null) return 0;
+        if (cursor.expiresAt < StructureCheckScheduler.currentTick()) {
+            remove(object, actor, key);
+            return 0;
+        }
+        return cursor.index;
+    }
+
+    /**
+     * @param index index of the element the walk stopped at, or -1 if the walk went through all elements
+     */
+    static void update(Object object, Player actor, IStructureDefinition<?> definition, String piece,
+            ExtendedFacing facing, int basePositionX, int basePositionY, int basePositionZ, int basePositionA,
+            int basePositionB, int basePositionC, int index) {
+        if (object == null || actor == null) return;
+        Key key = new Key(
+                definition,
+                piece,
+                facing,
+                basePositionX,
+                basePositionY,
+                basePositionZ,
+                basePositionA,
+                basePositionB,
+                basePositionC);
+        if (index < 0) {
+            remove(object, actor, key);
+            return;
+        }
+        long tick = StructureCheckScheduler.currentTick();
+        Map<Key, Cursor> cursors = CURSORS.computeIfAbsent(object, k -> new HashMap<>())
+                .computeIfAbsent(actor.getUUID(), k -> new HashMap<>());
+        // cursors of rotated or moved structures are never looked up again
+        cursors.values().removeIf(cursor -> cursor.expiresAt < tick);
+        cursors.put(key, new Cursor(index, tick + EXPIRY_TICKS));
+    }
+
+    private static void remove(Object object, Player actor, Key key) {
+        Map<UUID, Map<Key, Cursor>> players = CURSORS.get(object);
+        if (players == null) return;
+        Map<Key, Cursor> cursors = players.get(actor.getUUID());
+        if (cursors == null) return;
+        cursors.remove(key);
+        if (cursors.isEmpty()) players.remove(actor.getUUID());
+        if (players.isEmpty()) CURSORS.remove(object);
+    }
+}
@@ -0,0 +1,171 @@
+package com.gtnewhorizon.structurelib.structure;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import com.gtnewhorizon.structurelib.alignment.enumerable.ExtendedFacing;
+import com.gtnewhorizon.structurelib.structure.IStructureElement.BlocksToPlace;
+import com.gtnewhorizon.structurelib.util.ItemStackMap;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import net.minecraft.network.chat.Component;
+import net.minecraft.network.chat.TranslatableComponent;
+import net.minecraft.world.item.ItemStack;
+import net.minecraft.world.level.Level;
+
+/**
+ * First pass of a planned survival build. Walks the piece without touching the world, collecting the elements that
+ * need work and adding up the items they need, so that missing items are known before anything is placed. The second
+ * pass then runs the usual {@link SurvivalBuildStructureWalker} over the collected elements only.
+ * <p>
+ * Only {@linkplain IStructureElement#isSnapshotSafe() snapshot safe} elements are checked and planned, as their check
+ * has no side effects. Everything else is passed on to the second pass as is, and extracts its items on its own.
+ *
+ * @see IStructureDefinition#survivalBuildPlanned(Object, ItemStack, String, Level, ExtendedFacing, int, int, int, int,
+ *      int, int, int, ISurvivalBuildEnvironment, boolean)
+ */
+class SurvivalBuildPlanner<T> implements IStructureWalker<T> {
+
+    private final T object;
+    private final ItemStack trigger;
+    private final int elementBudget;
+    private final ISurvivalBuildEnvironment params;
+    private final AutoPlaceEnvironment env;
+    private final SurvivalBuildStructureWalker<T> builder;
+
+    private final List<IStructureElement<T>> elements = new ArrayList<>();
+    /**
+     * x, y, z, a, b, c of each element in {@link #elements}.
+     */
+    private final IntArrayList positions = new IntArrayList();
+    private int planned;
+
+    private final Map<ItemStack, Supply> supplies = new ItemStackMap<>(true);
+    private final Map<ItemStack, Integer> missing = new ItemStackMap<>(true);
+
+    /**
+     * How many of an item are reserved so far, and what is known about how many are available.
+     */
+    private static final class Supply {
+
+        private int reserved;
+        private int available;
+        private int unavailable = Integer.MAX_VALUE;
+    }
+
+    /**
+     * @param chatter where to report missing items
+     */
+    SurvivalBuildPlanner(T object, ItemStack trigger, int elementBudget, ISurvivalBuildEnvironment params,
+            Consumer<Component> chatter, IStructureDefinition<?> definition, String piece, ExtendedFacing facing,
+            int[] baseOffsetABC, boolean check) {
+        this.object = object;
+        this.trigger = trigger;
+        this.elementBudget = elementBudget;
+        this.params = params;
+        this.env = new AutoPlaceEnvironment(
+                params.getActor(),
+                chatter,
+                definition,
+                piece,
+                facing,
+                baseOffsetABC);
+        this.builder = new SurvivalBuildStructureWalker<>(
+                object,
+                trigger,
+                elementBudget,
+                params,
+                definition,
+                piece,
+                facing,
+                baseOffsetABC,
+                check);
+    }
+
+    @Override
+    public boolean visit(IStructureElement<T> element, Level world, int x, int y, int z, int a, int b, int c) {
+        if (element.isSnapshotSafe()) {
+            if (element.check(object, world, x, y, z)) return true;
+            env.offsetABC[0] = a;
+            env.offsetABC[1] = b;
+            env.offsetABC[2] = c;
+            env.setSource(params.getSource());
+            BlocksToPlace blocksToPlace = element.getBlocksToPlace(object, world, x, y, z, trigger, env);
+            if (blocksToPlace != null && blocksToPlace.getStacks() != null) reserve(blocksToPlace.getStacks());
+            planned++;
+        }
+        elements.add(element);
+        positions.add(x);
+        positions.add(y);
+        positions.add(z);
+        positions.add(a);
+        positions.add(b);
+        positions.add(c);
+        return planned < elementBudget;
+    }
+
+    /**
+     * Reserve the first of given stacks there is enough of, or record the first one as missing.
+     */
+    private void reserve(Iterable<ItemStack> candidates) {
+        ItemStack first = null;
+        for (ItemStack candidate : candidates) {
+            if (candidate.isEmpty()) continue;
+            if (first == null) first = candidate;
+            Supply supply = supplies.computeIfAbsent(candidate, k -> new Supply());
+            int needed = supply.reserved + candidate.getCount();
+            if (isAvailable(candidate, supply, needed)) {
+                supply.reserved = needed;
+                return;
+            }
+        }
+        if (first != null) missing.merge(first, first.getCount(), Integer::sum);
+    }
+
+    private boolean isAvailable(ItemStack stack, Supply supply, int count) {
+        if (count <= supply.available) return true;
+        if (count >= supply.unavailable) return false;
+        ItemStack query = stack.copy();
+        query.setCount(count);
+        if (params.getSource().takeAll(query, true)) {
+            supply.available = count;
+            return true;
+        }
+        supply.unavailable = count;
+        return false;
+    }
+
+    /**
+     * Report missing items if any, otherwise run the second pass.
+     *
+     * @return number of elements built, -1 if structure done, or -3 if items are missing. nothing is built in the
+     *         latter case.
+     */
+    int build(Level world) {
+        if (!missing.isEmpty()) {
+            for (Map.Entry<ItemStack, Integer> e : missing.entrySet()) {
+                env.getChatter().accept(
+                        new TranslatableComponent(
+                                "structurelib.autoplace.error.missing_items",
+                                e.getKey().getDisplayName(),
+                                e.getValue()));
+            }
+            return -3;
+        }
+        for (int i = 0; i < elements.size(); i++) {
+            int p = i * 6;
+            if (!builder.visit(
+                    elements.get(i),
+                    world,
+                    positions.getInt(p),
+                    positions.getInt(p + 1),
+                    positions.getInt(p + 2),
+                    positions.getInt(p + 3),
+                    positions.getInt(p + 4),
+                    positions.getInt(p + 5)))
+                break;
+        }
+        return builder.getBuilt();
+    }
+}
@@ -105,6 +105,10 @@ public class InventoryUtility {
         return stackExtractors.iterator();
     }
 
+    static Iterable<InventoryProvider<?>> getInventoryProviders() {
+        return inventoryProviders;
+    }
+
     public static <Inv extends Container> InventoryProvider<InventoryIterable<Inv>> newInventoryProvider(
             Function<ServerPlayer, ? extends Inv> extractor) {
         return new InventoryProvider<InventoryIterable<Inv>>() {
@@ -194,6 +198,17 @@ public class InventoryUtility {
         return sum;
     }
 
+    /**
+     * Index the inventories of given player, for many {@link #takeFromInventory(ServerPlayer, ItemStack, boolean)} in a
+     * row. Call {@link PlayerInventoryIndex#commit()} once done.
+     *
+     * @param player source of stacks
+     * @return a new index, populated on first use
+     */
+    public static PlayerInventoryIndex indexPlayerInventory(ServerPlayer player) {
+        return new PlayerInventoryIndex(player);
+    }
+
     // workaround java generics issue
     private static <R extends Iterable<ItemStack>> int takeFromPlayer(ServerPlayer player,
             Predicate<ItemStack> predicate, boolean simulate, int count, ItemStackCounterImpl store,
@@ -0,0 +1,163 @@
+package com.gtnewhorizon.structurelib.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.gtnewhorizon.structurelib.util.InventoryUtility.InventoryProvider;
+import net.minecraft.server.level.ServerPlayer;
+import net.minecraft.world.Container;
+import net.minecraft.world.item.ItemStack;
+
+/**
+ * An index of the stacks in the inventories of a player, for extracting lots of exact item stacks in a row, e.g. for
+ * one autoplace run.
+ * <p>
+ * The index is built on first use, and maps each item and NBT tag to the slots holding it, so that
+ * {@link #take(ItemStack, boolean)} is a hash lookup instead of a scan of all inventories. Stacks are drained in place,
+ * so the index stays in sync with the inventories. Items only reachable through
+ * {@linkplain InventoryUtility#registerStackExtractor(String, InventoryUtility.ItemStackExtractor) stack extractors}
+ * or inventories that are not backed by a {@link Container} are not indexed, lookups that cannot be satisfied from the
+ * index fall back to {@link InventoryUtility#takeFromInventory(ServerPlayer, ItemStack, boolean)}. Items found
+ * nowhere are remembered as missing, as inventories are only ever drained during the lifetime of an index.
+ * <p>
+ * Inventories are marked dirty once on {@link #commit()} instead of once per extraction. An index is meant to be
+ * short-lived: discard it once done, as changes made to the inventories by anything else are not picked up.
+ * <p>
+ * This class is part of API, but is not stable. Use at your own risk.
+ *
+ * @see InventoryUtility#indexPlayerInventory(ServerPlayer)
+ */
+public final class PlayerInventoryIndex {
+
+    private final ServerPlayer player;
+    private ItemStackMap<List<Slot>> index;
+    private final List<Source<?>> sources = new ArrayList<>();
+    /**
+     * Stacks not found anywhere. Values are always true.
+     */
+    private final ItemStackMap<Boolean> missing = new ItemStackMap<>(true);
+
+    PlayerInventoryIndex(ServerPlayer player) {
+        this.player = player;
+    }
+
+    private static final class Source<R extends Iterable<ItemStack>> {
+
+        private final InventoryProvider<R> provider;
+        private final R inventory;
+        private boolean dirty;
+
+        private Source(InventoryProvider<R> provider, R inventory) {
+            this.provider = provider;
+            this.inventory = inventory;
+        }
+
+        private void commit() {
+            if (dirty) provider.markDirty(inventory);
+            dirty = false;
+        }
+    }
+
+    private static final class Slot {
+
+        private final Source<?> source;
+        private final Container container;
+        private final int slot;
+        private final ItemStack stack;
+
+        private Slot(Source<?> source, Container container, int slot, ItemStack stack) {
+            this.source = source;
+            this.container = container;
+            this.slot = slot;
+            this.stack = stack;
+        }
+
+        /**
+         * @return number of items left in this slot, or 0 if the slot now holds another stack
+         */
+        private int available() {
+            return container.getItem(slot) == stack ? stack.getCount() : 0;
+        }
+
+        private void drain(int count) {
+            stack.shrink(count);
+            if (stack.isEmpty()) container.setItem(slot, ItemStack.EMPTY);
+            source.dirty = true;
+        }
+    }
+
+    private void ensureIndexed() {
+        if (index != null) return;
+        index = new ItemStackMap<>(true);
+        for (InventoryProvider<?> provider : InventoryUtility.getInventoryProviders()) {
+            addSource(provider);
+        }
+    }
+
+    // workaround java generics issue
+    private <R extends Iterable<ItemStack>> void addSource(InventoryProvider<R> provider) {
+        R inventory = provider.getInventory(player);
+        if (!(inventory instanceof InventoryIterable)) return;
+        Source<R> source = new Source<>(provider, inventory);
+        sources.add(source);
+        Container container = ((InventoryIterable<?>) inventory).getInventory();
+        int slot = 0;
+        for (ItemStack stack : inventory) {
+            if (!stack.isEmpty()) {
+                index.computeIfAbsent(stack, k -> new ArrayList<>()).add(new Slot(source, container, slot, stack));
+            }
+            slot++;
+        }
+    }
+
+    /**
+     * Take some items matching given stack exactly, NBT included. Same as
+     * {@link InventoryUtility#takeFromInventory(ServerPlayer, ItemStack, boolean)}, but only scans the inventories if
+     * the index does not have enough items.
+     *
+     * @param filter   the precise type of item to extract. stackSize matters
+     * @param simulate whether to do removal
+     * @return amount taken. never negative nor bigger than count...
+     */
+    public int take(ItemStack filter, boolean simulate) {
+        if (filter.isEmpty()) throw new IllegalArgumentException();
+        if (missing.containsKey(filter)) return 0;
+        ensureIndexed();
+        int count = filter.getCount();
+        List<Slot> slots = index.get(filter);
+        if (slots != null) {
+            int available = 0;
+            for (Slot slot : slots) {
+                available += slot.available();
+                if (available >= count) break;
+            }
+            if (available >= count) {
+                if (!simulate) drain(slots, count);
+                return count;
+            }
+        }
+        // maybe in a backpack or somewhere else not indexed
+        int found = InventoryUtility.takeFromInventory(player, filter, simulate);
+        if (found == 0) missing.put(filter.copy(), Boolean.TRUE);
+        return found;
+    }
+
+    private static void drain(List<Slot> slots, int count) {
+        for (Slot slot : slots) {
+            int taken = Math.min(count, slot.available());
+            if (taken == 0) continue;
+            slot.drain(taken);
+            count -= taken;
+            if (count == 0) return;
+        }
+    }
+
+    /**
+     * Mark all inventories drained through this index dirty. Call once done with this index.
+     */
+    public void commit() {
+        for (Source<?> source : sources) {
+            source.commit();
+        }
+    }
+}
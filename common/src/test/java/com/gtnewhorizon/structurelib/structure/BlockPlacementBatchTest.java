@@ -0,0 +1,106 @@
+package com.gtnewhorizon.structurelib.structure;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import net.minecraft.SharedConstants;
+import net.minecraft.core.BlockPos;
+import net.minecraft.server.Bootstrap;
+import net.minecraft.world.level.BlockGetter;
+import net.minecraft.world.level.block.Block;
+import net.minecraft.world.level.block.Blocks;
+import net.minecraft.world.level.block.FenceBlock;
+import net.minecraft.world.level.block.entity.BlockEntity;
+import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.level.material.FluidState;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class BlockPlacementBatchTest {
+
+    private static final BlockPos PLACED = new BlockPos(0, 64, 0);
+    private static final BlockPos FENCE = PLACED.east();
+
+    private static class TestBlocks implements BlockGetter {
+
+        final Long2ObjectMap<BlockState> states = new Long2ObjectOpenHashMap<>();
+
+        void set(BlockPos pos, BlockState state) {
+            states.put(pos.asLong(), state);
+        }
+
+        @Override
+        public BlockEntity getBlockEntity(BlockPos pos) {
+            return null;
+        }
+
+        @Override
+        public BlockState getBlockState(BlockPos pos) {
+            BlockState state = states.get(pos.asLong());
+            return state == null ? Blocks.AIR.defaultBlockState() : state;
+        }
+
+        @Override
+        public FluidState getFluidState(BlockPos pos) {
+            return getBlockState(pos).getFluidState();
+        }
+
+        @Override
+        public int getHeight() {
+            return 384;
+        }
+
+        @Override
+        public int getMinBuildHeight() {
+            return -64;
+        }
+    }
+
+    @BeforeClass
+    public static void bootstrap() {
+        SharedConstants.tryDetectVersion();
+        Bootstrap.bootStrap();
+    }
+
+    @Test
+    public void neighboursNotifyClients() {
+        assertTrue((BlockPlacementBatch.BATCHED_FLAGS & Block.UPDATE_CLIENTS) != 0);
+        // Level.setBlock passes these on to the shape updates of neighbours
+        assertTrue((BlockPlacementBatch.BATCHED_FLAGS & -34 & Block.UPDATE_CLIENTS) != 0);
+    }
+
+    @Test
+    public void fenceNextToPlacedBlockIsRelit() {
+        TestBlocks blocks = new TestBlocks();
+        blocks.set(FENCE, Blocks.OAK_FENCE.defaultBlockState());
+        BlockPlacementBatch batch = new BlockPlacementBatch(null);
+
+        // what placing stone west of the fence does while batching. the fence changes before setBlock returns
+        blocks.set(PLACED, Blocks.STONE.defaultBlockState());
+        batch.changed(PLACED.asLong());
+        blocks.set(FENCE, Blocks.OAK_FENCE.defaultBlockState().setValue(FenceBlock.WEST, true));
+        batch.changed(FENCE.asLong());
+        batch.placed(PLACED.asLong(), Blocks.AIR.defaultBlockState());
+
+        assertEquals(LongArrayList.wrap(new long[] { PLACED.asLong(), FENCE.asLong() }), batch.getLightChecks(blocks));
+    }
+
+    @Test
+    public void placedBlockIsOnlyRelitIfLightChanged() {
+        TestBlocks blocks = new TestBlocks();
+        BlockPlacementBatch batch = new BlockPlacementBatch(null);
+        BlockPos same = PLACED.above();
+
+        blocks.set(PLACED, Blocks.DIRT.defaultBlockState());
+        batch.placed(PLACED.asLong(), Blocks.STONE.defaultBlockState());
+        blocks.set(same, Blocks.STONE.defaultBlockState());
+        batch.placed(same.asLong(), Blocks.STONE.defaultBlockState());
+        // placed again later in the same batch. the state from before the first change counts
+        batch.placed(same.asLong(), Blocks.DIRT.defaultBlockState());
+
+        assertTrue(batch.getLightChecks(blocks).isEmpty());
+    }
+}
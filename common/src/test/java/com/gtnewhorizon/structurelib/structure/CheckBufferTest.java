@@ -0,0 +1,124 @@
+package com.gtnewhorizon.structurelib.structure;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.lang.management.ManagementFactory;
+
+import net.minecraft.world.item.ItemStack;
+import net.minecraft.world.level.Level;
+import org.junit.Test;
+
+public class CheckBufferTest {
+
+    private static final int ELEMENTS = 1000;
+    private static final int ROUNDS = 1000;
+
+    private static class CountingElement implements IStructureElement<Object> {
+
+        long sum;
+        int success, fail;
+
+        @Override
+        public boolean check(Object o, Level world, int x, int y, int z) {
+            return true;
+        }
+
+        @Override
+        public boolean spawnHint(Object o, Level world, int x, int y, int z, ItemStack trigger) {
+            return false;
+        }
+
+        @Override
+        public boolean placeBlock(Object o, Level world, int x, int y, int z, ItemStack trigger) {
+            return false;
+        }
+
+        @Override
+        public void onStructureSuccess(Object o, Level world, int x, int y, int z) {
+            success++;
+            sum += x + y + z;
+        }
+
+        @Override
+        public void onStructureFail(Object o, Level world, int x, int y, int z) {
+            fail++;
+            sum += x + y + z;
+        }
+    }
+
+    private static void runOnce(CountingElement element, boolean success) {
+        CheckBuffer buffer = CheckBuffer.acquire();
+        try {
+            for (int i = 0; i < ELEMENTS; i++) {
+                buffer.add(element, i, -i & 0xff, -i);
+            }
+            if (success) buffer.replaySuccess(null, null);
+            else buffer.replayFail(null, null);
+        } finally {
+            buffer.release();
+        }
+    }
+
+    @Test
+    public void replaysRecordedPositions() {
+        CountingElement element = new CountingElement();
+        CheckBuffer buffer = CheckBuffer.acquire();
+        try {
+            buffer.add(element, 1, 2, 3);
+            buffer.add(element, -30000000, -64, 29999999);
+            assertEquals(2, buffer.size());
+            buffer.replaySuccess(null, null);
+        } finally {
+            buffer.release();
+        }
+        assertEquals(2, element.success);
+        assertEquals(0, element.fail);
+        assertEquals(1 + 2 + 3 - 30000000 - 64 + 29999999, element.sum);
+    }
+
+    @Test
+    public void nestedAcquireReturnsDistinctBuffers() {
+        CheckBuffer outer = CheckBuffer.acquire();
+        try {
+            CheckBuffer inner = CheckBuffer.acquire();
+            try {
+                assertNotSame(outer, inner);
+            } finally {
+                inner.release();
+            }
+            CheckBuffer again = CheckBuffer.acquire();
+            try {
+                assertSame(inner, again);
+            } finally {
+                again.release();
+            }
+        } finally {
+            outer.release();
+        }
+    }
+
+    @Test
+    public void steadyStateDoesNotAllocate() {
+        assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(bean.isThreadAllocatedMemorySupported());
+        bean.setThreadAllocatedMemoryEnabled(true);
+        long thread = Thread.currentThread().getId();
+
+        CountingElement element = new CountingElement();
+        // warm up, so that buffers are grown and code is compiled
+        for (int i = 0; i < ROUNDS; i++) runOnce(element, (i & 1) == 0);
+
+        long before = bean.getThreadAllocatedBytes(thread);
+        for (int i = 0; i < ROUNDS; i++) runOnce(element, (i & 1) == 0);
+        long allocated = bean.getThreadAllocatedBytes(thread) - before;
+
+        assertEquals(2 * ROUNDS * ELEMENTS, element.success + element.fail);
+        // leave some slack for the measurement itself
+        assertTrue("allocated " + allocated + " bytes over " + ROUNDS + " checks", allocated / ROUNDS < 16);
+    }
+}
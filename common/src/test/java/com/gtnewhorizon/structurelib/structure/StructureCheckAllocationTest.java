@@ -0,0 +1,197 @@
+package com.gtnewhorizon.structurelib.structure;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Field;
+import java.util.Collections;
+import java.util.List;
+
+import com.gtnewhorizon.structurelib.alignment.enumerable.ExtendedFacing;
+import net.minecraft.SharedConstants;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.SectionPos;
+import net.minecraft.server.Bootstrap;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.item.ItemStack;
+import net.minecraft.world.level.Level;
+import net.minecraft.world.level.block.Block;
+import net.minecraft.world.level.block.Blocks;
+import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.level.chunk.PalettedContainer;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import sun.misc.Unsafe;
+
+/**
+ * Runs real structure checks against a {@link ChunkSnapshot}, the same way a {@linkplain ParallelStructureCheck
+ * parallel check} does, so that no live world is needed. Checks go through the public entry points of the definition,
+ * so plan lookup and {@link StructureIndex} updates are measured as well.
+ */
+public class StructureCheckAllocationTest {
+
+    private static final int ROUNDS = 1000;
+    private static final int EDGE = 8;
+    private static final int BASE_X = 8, BASE_Y = 72, BASE_Z = 8;
+    /**
+     * Context objects of the structures, so that checks are recorded in the {@link StructureIndex}.
+     */
+    private static final Object FORMED = new Object(), BROKEN = new Object();
+
+    private static class CountingElement implements IStructureElement<Object> {
+
+        int success, fail;
+
+        @Override
+        public boolean check(Object o, Level world, int x, int y, int z) {
+            return StructureBlockAccess.getBlockState(world, x, y, z).is(Blocks.STONE);
+        }
+
+        @Override
+        public boolean spawnHint(Object o, Level world, int x, int y, int z, ItemStack trigger) {
+            return false;
+        }
+
+        @Override
+        public boolean placeBlock(Object o, Level world, int x, int y, int z, ItemStack trigger) {
+            return false;
+        }
+
+        @Override
+        public void onStructureSuccess(Object o, Level world, int x, int y, int z) {
+            success++;
+        }
+
+        @Override
+        public void onStructureFail(Object o, Level world, int x, int y, int z) {
+            fail++;
+        }
+    }
+
+    @BeforeClass
+    public static void bootstrap() {
+        SharedConstants.tryDetectVersion();
+        Bootstrap.bootStrap();
+    }
+
+    /**
+     * A server side world that is never constructed, since a real one needs a running server. It only serves as key for
+     * the snapshot and the structure index, so none of its methods may be called.
+     */
+    private static Level level() throws ReflectiveOperationException {
+        Field field = Unsafe.class.getDeclaredField("theUnsafe");
+        field.setAccessible(true);
+        return (Level) ((Unsafe) field.get(null)).allocateInstance(ServerLevel.class);
+    }
+
+    /**
+     * A snapshot of given world covering the whole structure, with every section filled with given block.
+     */
+    private static ChunkSnapshot snapshot(Level world, BlockState state) {
+        ChunkSnapshot snapshot = new ChunkSnapshot(world, 0, 256);
+        PalettedContainer<BlockState> section = new PalettedContainer<>(
+                Block.BLOCK_STATE_REGISTRY,
+                state,
+                PalettedContainer.Strategy.SECTION_STATES);
+        for (int x = -1; x <= 1; x++) {
+            for (int y = -1; y <= 1; y++) {
+                for (int z = -1; z <= 1; z++) {
+                    snapshot.put(
+                            SectionPos.asLong(
+                                    SectionPos.blockToSectionCoord(BASE_X) + x,
+                                    SectionPos.blockToSectionCoord(BASE_Y) + y,
+                                    SectionPos.blockToSectionCoord(BASE_Z) + z),
+                            section);
+                }
+            }
+        }
+        return snapshot;
+    }
+
+    private static boolean check(IStructureDefinition<Object> definition, Object owner, ChunkSnapshot snapshot,
+            boolean failFast) {
+        StructureBlockAccess.begin(snapshot);
+        try {
+            return failFast
+                    ? definition.checkFailFast(
+                            owner,
+                            "main",
+                            snapshot.world,
+                            ExtendedFacing.DEFAULT,
+                            BASE_X,
+                            BASE_Y,
+                            BASE_Z,
+                            EDGE / 2,
+                            EDGE / 2,
+                            0,
+                            true)
+                    : definition.check(
+                            owner,
+                            "main",
+                            snapshot.world,
+                            ExtendedFacing.DEFAULT,
+                            BASE_X,
+                            BASE_Y,
+                            BASE_Z,
+                            EDGE / 2,
+                            EDGE / 2,
+                            0,
+                            true);
+        } finally {
+            StructureBlockAccess.end();
+        }
+    }
+
+    /**
+     * One check of each kind. A formed structure stays in the index and a broken one never enters it, as is the case
+     * for the periodic rechecks of a controller.
+     */
+    private static void checkAll(IStructureDefinition<Object> definition, ChunkSnapshot formed,
+            ChunkSnapshot broken) {
+        assertTrue(check(definition, FORMED, formed, false));
+        assertFalse(check(definition, BROKEN, broken, false));
+        assertFalse(check(definition, BROKEN, broken, true));
+    }
+
+    @Test
+    public void checkDoesNotAllocate() throws ReflectiveOperationException {
+        assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(bean.isThreadAllocatedMemorySupported());
+        bean.setThreadAllocatedMemoryEnabled(true);
+        long thread = Thread.currentThread().getId();
+
+        // the bottom line of every slice is checked by a custom element, the rest by a state matcher
+        List<String[]> shape = StructureDefinitionBuilderTest.hollowCube(EDGE);
+        for (String[] slice : shape) slice[0] = slice[0].replace('x', 'y');
+        CountingElement element = new CountingElement();
+        IStructureDefinition<Object> definition = StructureDefinition.builder().addShape("main", shape)
+                .addElement('x', StructureUtility.ofBlock(Blocks.STONE)).addElement('y', element).build();
+        Level level = level();
+        ChunkSnapshot formed = snapshot(level, Blocks.STONE.defaultBlockState());
+        ChunkSnapshot broken = snapshot(level, Blocks.DIRT.defaultBlockState());
+        try {
+            // warm up, so that buffers are grown, the plan and the index entry exist, and code is compiled
+            for (int i = 0; i < ROUNDS; i++) checkAll(definition, formed, broken);
+            element.success = element.fail = 0;
+
+            long before = bean.getThreadAllocatedBytes(thread);
+            for (int i = 0; i < ROUNDS; i++) checkAll(definition, formed, broken);
+            long allocated = bean.getThreadAllocatedBytes(thread) - before;
+
+            assertEquals(ROUNDS * EDGE * EDGE, element.success);
+            // the fail fast check is rejected by looking at the palettes alone, so it does not visit anything
+            assertEquals(ROUNDS * EDGE * EDGE, element.fail);
+            long first = definition.getPlanFor("main", ExtendedFacing.DEFAULT)
+                    .toLevelPositions(BASE_X, BASE_Y, BASE_Z, EDGE / 2, EDGE / 2, 0)[0];
+            assertEquals(Collections.singletonList(FORMED), StructureIndex.ownersAt(level, BlockPos.of(first)));
+            // leave some slack for the measurement itself
+            assertTrue("allocated " + allocated + " bytes over " + ROUNDS + " rounds", allocated / ROUNDS < 16);
+        } finally {
+            StructureIndex.onLevelUnload(level);
+        }
+    }
+}
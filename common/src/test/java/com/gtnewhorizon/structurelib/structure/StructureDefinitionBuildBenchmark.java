@@ -0,0 +1,34 @@
+package com.gtnewhorizon.structurelib.structure;
+
+import static com.gtnewhorizon.structurelib.structure.StructureDefinitionBuilderTest.build;
+import static com.gtnewhorizon.structurelib.structure.StructureDefinitionBuilderTest.hollowCube;
+
+import java.util.List;
+
+/**
+ * Not a real benchmark, but enough to see whether build time grows linearly with shape volume. Prints time per block
+ * for growing cubes, up to the size of the largest multis out there. Run manually, it is not part of the test suite.
+ */
+public class StructureDefinitionBuildBenchmark {
+
+    public static void main(String[] args) {
+        // warm up, so that the first measurement is not dominated by class loading and interpretation
+        for (int i = 0; i < 20; i++) build("warmup", hollowCube(32));
+
+        for (int edge = 8; edge <= 64; edge *= 2) {
+            List<String[]> shape = hollowCube(edge);
+            int rounds = Math.max(1, (1 << 18) / (edge * edge * edge));
+            long start = System.nanoTime();
+            for (int i = 0; i < rounds; i++) build("main", shape);
+            long elapsed = (System.nanoTime() - start) / rounds;
+
+            int volume = edge * edge * edge;
+            System.out.printf(
+                    "addShape + build of %d^3 (%d blocks): %.3f ms, %.1f ns per block%n",
+                    edge,
+                    volume,
+                    elapsed / 1e6,
+                    (double) elapsed / volume);
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package com.gtnewhorizon.structurelib.structure;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.gtnewhorizon.structurelib.alignment.enumerable.ExtendedFacing;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import net.minecraft.world.item.ItemStack;
+import net.minecraft.world.level.Level;
+import org.junit.Test;
+
+public class StructureDefinitionBuilderTest {
+
+    private static final IStructureElement<Object> ELEMENT = new IStructureElement<Object>() {
+
+        @Override
+        public boolean check(Object o, Level world, int x, int y, int z) {
+            return true;
+        }
+
+        @Override
+        public boolean spawnHint(Object o, Level world, int x, int y, int z, ItemStack trigger) {
+            return false;
+        }
+
+        @Override
+        public boolean placeBlock(Object o, Level world, int x, int y, int z, ItemStack trigger) {
+            return false;
+        }
+    };
+    private static final IStructureElement<Object> OTHER_ELEMENT = new IStructureElement<Object>() {
+
+        @Override
+        public boolean check(Object o, Level world, int x, int y, int z) {
+            return true;
+        }
+
+        @Override
+        public boolean spawnHint(Object o, Level world, int x, int y, int z, ItemStack trigger) {
+            return false;
+        }
+
+        @Override
+        public boolean placeBlock(Object o, Level world, int x, int y, int z, ItemStack trigger) {
+            return false;
+        }
+    };
+
+    /**
+     * A cube of given edge length, with a hollow core and a controller in the middle of the front face, so that both
+     * elements and skips of all three directions are exercised.
+     */
+    static List<String[]> hollowCube(int edge) {
+        List<String[]> slices = new ArrayList<>(edge);
+        StringBuilder line = new StringBuilder(edge);
+        for (int c = 0; c < edge; c++) {
+            String[] slice = new String[edge];
+            for (int b = 0; b < edge; b++) {
+                line.setLength(0);
+                for (int a = 0; a < edge; a++) {
+                    boolean shell = a == 0 || b == 0 || c == 0 || a == edge - 1 || b == edge - 1 || c == edge - 1;
+                    if (c == 0 && a == edge / 2 && b == edge / 2) line.append('~');
+                    else line.append(shell ? 'x' : ' ');
+                }
+                slice[b] = line.toString();
+            }
+            slices.add(slice);
+        }
+        return slices;
+    }
+
+    static StructureDefinition<Object> build(String name, Iterable<String[]> shape) {
+        return (StructureDefinition<Object>) StructureDefinition.builder().addShape(name, shape)
+                .addElement('x', ELEMENT).build();
+    }
+
+    @Test
+    public void collapsesSkipsIntoNavigates() {
+        StructureDefinition<Object> definition = (StructureDefinition<Object>) StructureDefinition.builder()
+                .addShape("main", new String[][] { { "x~", " x" }, {}, { "x" } }).addElement('x', ELEMENT).build();
+
+        // step (1, 1, 0) to the second x, then step (0, 0, 2) over the empty slice to the third
+        assertEquals("x\uD000x\uD001x", definition.getShapes().get("main"));
+        assertEquals(5, definition.getStructureFor("main").length);
+        assertTrue(definition.isContainedInStructure("main", 0, 0, 0));
+        assertTrue(definition.isContainedInStructure("main", 1, 0, 0));
+        assertTrue(definition.isContainedInStructure("main", 1, 1, 0));
+        assertTrue(definition.isContainedInStructure("main", 0, 0, 2));
+        assertFalse(definition.isContainedInStructure("main", 0, 1, 0));
+        assertFalse(definition.isContainedInStructure("main", 0, 0, 1));
+    }
+
+    @Test
+    public void streamedShapeCollapsesSkips() {
+        // slices are handed out one at a time, as a large shape read from a file would be
+        List<String[]> shape = hollowCube(3);
+        StructureDefinition<Object> definition = build("main", shape::iterator);
+
+        // (0, 1, 0) to the next line, (1, 0, 0) over the controller or the core, (0, 0, 1) to the next slice
+        assertEquals(
+                "xxx\uD000x\uD001x\uD000xxx"
+                        + "\uD002xxx\uD000x\uD001x\uD000xxx"
+                        + "\uD002xxx\uD000xxx\uD000xxx",
+                definition.getShapes().get("main"));
+        IStructureElement<Object>[] elements = definition.getStructureFor("main");
+        assertEquals(35, elements.length);
+        assertEquals(3 * 3 * 3 - 2, Arrays.stream(elements).filter(e -> e == ELEMENT).count());
+        OccupiedSpace occupiedSpace = definition.getOccupiedSpace("main");
+        // the controller is occupied, the core is not
+        assertEquals(3 * 3 * 3 - 1, occupiedSpace.size());
+        assertEquals(2, occupiedSpace.getMaxA());
+        assertEquals(2, occupiedSpace.getMaxC());
+    }
+
+    @Test
+    public void compactPieceRoundTrips() {
+        // two distinct elements, so that the order of runs matters
+        List<String[]> shape = hollowCube(16);
+        for (String[] slice : shape) slice[0] = slice[0].replace('x', 'y');
+        StructureDefinition<Object> definition = (StructureDefinition<Object>) StructureDefinition.builder()
+                .addShape("main", shape).addElement('x', ELEMENT).addElement('y', OTHER_ELEMENT).build();
+        CompactStructurePiece<Object> piece = definition.getPiece("main");
+
+        // every char of the original shape that is not a skip, in shape order
+        List<IStructureElement<Object>> expected = new ArrayList<>();
+        IntArrayList expectedAbc = new IntArrayList();
+        for (int c = 0; c < shape.size(); c++) {
+            String[] slice = shape.get(c);
+            for (int b = 0; b < slice.length; b++) {
+                for (int a = 0; a < slice[b].length(); a++) {
+                    char ch = slice[b].charAt(a);
+                    if (ch == ' ' || ch == '~') continue;
+                    expected.add(ch == 'x' ? ELEMENT : OTHER_ELEMENT);
+                    expectedAbc.add(a);
+                    expectedAbc.add(b);
+                    expectedAbc.add(c);
+                }
+            }
+        }
+
+        // resolve the navigates of the decoded piece
+        List<IStructureElement<Object>> decoded = new ArrayList<>();
+        IntArrayList decodedAbc = new IntArrayList();
+        int a = 0, b = 0, c = 0;
+        for (IStructureElement<Object> element : piece) {
+            if (element.isNavigating()) {
+                a = (element.resetA() ? 0 : a) + element.getStepA();
+                b = (element.resetB() ? 0 : b) + element.getStepB();
+                c = (element.resetC() ? 0 : c) + element.getStepC();
+            } else {
+                decoded.add(element);
+                decodedAbc.add(a++);
+                decodedAbc.add(b);
+                decodedAbc.add(c);
+            }
+        }
+        assertEquals(expected, decoded);
+        assertEquals(expectedAbc, decodedAbc);
+
+        StructurePlan<Object> plan = definition.getPlanFor("main", ExtendedFacing.DEFAULT);
+        List<IStructureElement<Object>> walked = new ArrayList<>();
+        IntArrayList walkedAbc = new IntArrayList();
+        StructurePlan.Cursor<Object> cursor = new StructurePlan.Cursor<Object>().reset(plan);
+        while (cursor.next()) {
+            assertEquals(walked.size(), cursor.index);
+            walked.add(cursor.element);
+            walkedAbc.add(cursor.a);
+            walkedAbc.add(cursor.b);
+            walkedAbc.add(cursor.c);
+        }
+        assertEquals(expected, walked);
+        assertEquals(expectedAbc, walkedAbc);
+        assertEquals(expected.size(), plan.size());
+        // the plan walks the runs of the piece, not a copy
+        assertSame(piece.getRuns(), plan.runs);
+        assertSame(piece.getPalette(), plan.palette);
+
+        List<IStructureElement<Object>> iterated = new ArrayList<>();
+        piece.iterator().forEachRemaining(iterated::add);
+        assertArrayEquals(piece.toArray(), iterated.toArray());
+        int[] total = new int[1];
+        piece.forEachRun((element, count) -> total[0] += count);
+        assertEquals(piece.size(), total[0]);
+        assertEquals(iterated.size(), total[0]);
+        // x, y plus the navigates over the core, the controller and the line ends
+        assertTrue(piece.getPaletteSize() < 9);
+    }
+
+    @Test
+    public void plansOfAllFacingsShareElementData() {
+        StructureDefinition<Object> definition = build("main", hollowCube(5));
+        StructurePlan<Object> first = definition.getPlanFor("main", ExtendedFacing.DEFAULT);
+        int[] in = new int[3];
+        int[] out = new int[3];
+        for (ExtendedFacing facing : ExtendedFacing.VALUES) {
+            StructurePlan<Object> plan = definition.getPlanFor("main", facing);
+            assertSame(facing, plan.getFacing());
+            assertSame(first.palette, plan.palette);
+            assertSame(first.runs, plan.runs);
+            assertSame(first.matchers, plan.matchers);
+            StructurePlan.Cursor<Object> cursor = new StructurePlan.Cursor<Object>().reset(plan);
+            while (cursor.next()) {
+                in[0] = cursor.a;
+                in[1] = cursor.b;
+                in[2] = cursor.c;
+                facing.getLevelOffset(in, out);
+                assertEquals(out[0], plan.x(cursor.a, cursor.b, cursor.c));
+                assertEquals(out[1], plan.y(cursor.a, cursor.b, cursor.c));
+                assertEquals(out[2], plan.z(cursor.a, cursor.b, cursor.c));
+            }
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.gtnewhorizon.structurelib.structure;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+import com.gtnewhorizon.structurelib.alignment.enumerable.ExtendedFacing;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSet;
+import net.minecraft.SharedConstants;
+import net.minecraft.core.BlockPos;
+import net.minecraft.network.chat.Component;
+import net.minecraft.network.chat.TranslatableComponent;
+import net.minecraft.server.Bootstrap;
+import net.minecraft.world.item.ItemStack;
+import net.minecraft.world.item.Items;
+import net.minecraft.world.level.Level;
+import org.jetbrains.annotations.NotNull;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class SurvivalBuildPlannerTest {
+
+    private static final int ELEMENTS = 10;
+
+    /**
+     * Needs one stone per position, and remembers where it was placed instead of touching the world.
+     */
+    private static class StoneElement implements IStructureElement<Object> {
+
+        final LongSet placed = new LongOpenHashSet();
+
+        @Override
+        public boolean check(Object o, Level world, int x, int y, int z) {
+            return placed.contains(BlockPos.asLong(x, y, z));
+        }
+
+        @Override
+        public boolean isSnapshotSafe() {
+            return true;
+        }
+
+        @Override
+        public boolean spawnHint(Object o, Level world, int x, int y, int z, ItemStack trigger) {
+            return false;
+        }
+
+        @Override
+        public boolean placeBlock(Object o, Level world, int x, int y, int z, ItemStack trigger) {
+            return false;
+        }
+
+        @Override
+        public BlocksToPlace getBlocksToPlace(Object o, Level world, int x, int y, int z, ItemStack trigger,
+                AutoPlaceEnvironment env) {
+            return BlocksToPlace.create(new ItemStack(Items.STONE));
+        }
+
+        @Override
+        public PlaceResult survivalPlaceBlock(Object o, Level world, int x, int y, int z, ItemStack trigger,
+                AutoPlaceEnvironment env) {
+            if (check(o, world, x, y, z)) return PlaceResult.SKIP;
+            if (!env.getSource().takeOne(new ItemStack(Items.STONE), false)) return PlaceResult.REJECT;
+            placed.add(BlockPos.asLong(x, y, z));
+            return PlaceResult.ACCEPT;
+        }
+    }
+
+    private static class Stock implements IItemSource {
+
+        int stone;
+
+        Stock(int stone) {
+            this.stone = stone;
+        }
+
+        @NotNull
+        @Override
+        public Map<ItemStack, Integer> take(Predicate<ItemStack> predicate, boolean simulate, int count) {
+            ItemStack stack = new ItemStack(Items.STONE);
+            if (stone == 0 || !predicate.test(stack)) return Collections.emptyMap();
+            int taken = Math.min(count, stone);
+            if (!simulate) stone -= taken;
+            return Collections.singletonMap(stack, taken);
+        }
+    }
+
+    @BeforeClass
+    public static void bootstrap() {
+        SharedConstants.tryDetectVersion();
+        Bootstrap.bootStrap();
+    }
+
+    /**
+     * Run the first pass over a line of {@link #ELEMENTS} positions.
+     */
+    private static SurvivalBuildPlanner<Object> plan(StoneElement element, Stock stock, List<Component> messages) {
+        SurvivalBuildPlanner<Object> planner = new SurvivalBuildPlanner<>(
+                null,
+                ItemStack.EMPTY,
+                100,
+                ISurvivalBuildEnvironment.create(stock, null),
+                messages::add,
+                null,
+                "main",
+                ExtendedFacing.DEFAULT,
+                new int[3],
+                false);
+        for (int i = 0; i < ELEMENTS; i++) assertTrue(planner.visit(element, null, i, 64, 0, i, 0, 0));
+        return planner;
+    }
+
+    @Test
+    public void missingItemsAreReportedAndNothingIsPlaced() {
+        StoneElement element = new StoneElement();
+        element.placed.add(BlockPos.asLong(0, 64, 0));
+        Stock stock = new Stock(ELEMENTS - 4);
+        List<Component> messages = new ArrayList<>();
+
+        assertEquals(-3, plan(element, stock, messages).build(null));
+
+        assertEquals(1, element.placed.size());
+        assertEquals(ELEMENTS - 4, stock.stone);
+        assertEquals(1, messages.size());
+        TranslatableComponent message = (TranslatableComponent) messages.get(0);
+        assertEquals("structurelib.autoplace.error.missing_items", message.getKey());
+        // one of the positions is done already
+        assertEquals(3, message.getArgs()[1]);
+    }
+
+    @Test
+    public void enoughItemsBuildEverything() {
+        StoneElement element = new StoneElement();
+        element.placed.add(BlockPos.asLong(0, 64, 0));
+        Stock stock = new Stock(ELEMENTS - 1);
+        List<Component> messages = new ArrayList<>();
+
+        assertEquals(ELEMENTS - 1, plan(element, stock, messages).build(null));
+
+        assertEquals(ELEMENTS, element.placed.size());
+        assertEquals(0, stock.stone);
+        assertTrue(messages.isEmpty());
+        // nothing left to do
+        assertEquals(-1, plan(element, stock, messages).build(null));
+        assertTrue(messages.isEmpty());
+    }
+}
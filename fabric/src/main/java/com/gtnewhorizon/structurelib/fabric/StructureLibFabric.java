@@ -3,10 +3,20 @@ package com.gtnewhorizon.structurelib.fabric;
 import com.gtnewhorizon.structurelib.Registry;
 import com.gtnewhorizon.structurelib.StructureLib;
 import com.gtnewhorizon.structurelib.StructureLibAPI;
+import com.gtnewhorizon.structurelib.alignment.constructable.AutoPlaceJobs;
 import com.gtnewhorizon.structurelib.command.CommandConfigureChannels;
+import com.gtnewhorizon.structurelib.structure.BlockStateSet;
+import com.gtnewhorizon.structurelib.structure.StructureCheckCache;
+import com.gtnewhorizon.structurelib.structure.StructureCheckScheduler;
+import com.gtnewhorizon.structurelib.structure.StructureIndex;
+import com.gtnewhorizon.structurelib.structure.StructureWatcher;
 import net.fabricmc.api.ModInitializer;
 import net.fabricmc.fabric.api.client.itemgroup.FabricItemGroupBuilder;
 import net.fabricmc.fabric.api.command.v1.CommandRegistrationCallback;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerChunkEvents;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerLifecycleEvents;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerTickEvents;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerWorldEvents;
 import net.minecraft.commands.Commands;
 import net.minecraft.resources.ResourceLocation;
 import net.minecraft.world.item.ItemStack;
@@ -18,5 +28,25 @@ public class StructureLibFabric extends StructureLib implements ModInitializer {
         super.preInit();
         Registry.init();
         CommandRegistrationCallback.EVENT.register((dispatcher, dedicated) -> CommandConfigureChannels.registerCommands(dispatcher, dedicated ? Commands.CommandSelection.DEDICATED : Commands.CommandSelection.INTEGRATED));
+        // block changes are hooked by LevelMixin
+        ServerChunkEvents.CHUNK_UNLOAD.register((level, chunk) -> {
+            StructureWatcher.onChunkUnload(level, chunk.getPos());
+            StructureIndex.onChunkUnload(level, chunk.getPos());
+            StructureCheckCache.onChunkUnload(level, chunk.getPos());
+        });
+        ServerWorldEvents.UNLOAD.register((server, level) -> {
+            StructureWatcher.onLevelUnload(level);
+            StructureIndex.onLevelUnload(level);
+            StructureCheckScheduler.onLevelUnload(level);
+            StructureCheckCache.onLevelUnload(level);
+            AutoPlaceJobs.onLevelUnload(level);
+        });
+        ServerTickEvents.END_SERVER_TICK.register(server -> {
+            StructureCheckScheduler.onServerTick();
+            AutoPlaceJobs.onServerTick();
+        });
+        ServerLifecycleEvents.SERVER_STOPPING.register(server -> StructureCheckScheduler.onServerStopping());
+        ServerLifecycleEvents.SERVER_STARTED.register(server -> BlockStateSet.onTagsUpdated());
+        ServerLifecycleEvents.END_DATA_PACK_RELOAD.register((server, resourceManager, success) -> BlockStateSet.onTagsUpdated());
     }
 }
@@ -0,0 +1,19 @@
+package com.gtnewhorizon.structurelib.fabric.mixin;
+
+import com.gtnewhorizon.structurelib.structure.BlockStateSet;
+import net.minecraft.client.multiplayer.ClientPacketListener;
+import net.minecraft.network.protocol.game.ClientboundUpdateTagsPacket;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+
+@Mixin(ClientPacketListener.class)
+public abstract class ClientPacketListenerMixin {
+
+    // same as forge's TagsUpdatedEvent on client. fires on join as well as on every /reload on the server
+    @Inject(method = "handleUpdateTags", at = @At("RETURN"))
+    private void structurelib$onUpdateTags(ClientboundUpdateTagsPacket packet, CallbackInfo ci) {
+        BlockStateSet.onTagsUpdated();
+    }
+}
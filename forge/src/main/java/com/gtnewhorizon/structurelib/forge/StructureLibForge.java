@@ -4,7 +4,13 @@ import com.gtnewhorizon.structurelib.ClientProxy;
 import com.gtnewhorizon.structurelib.Registry;
 import com.gtnewhorizon.structurelib.StructureLib;
 import com.gtnewhorizon.structurelib.StructureLibAPI;
+import com.gtnewhorizon.structurelib.alignment.constructable.AutoPlaceJobs;
 import com.gtnewhorizon.structurelib.command.CommandConfigureChannels;
+import com.gtnewhorizon.structurelib.structure.BlockStateSet;
+import com.gtnewhorizon.structurelib.structure.StructureCheckCache;
+import com.gtnewhorizon.structurelib.structure.StructureCheckScheduler;
+import com.gtnewhorizon.structurelib.structure.StructureIndex;
+import com.gtnewhorizon.structurelib.structure.StructureWatcher;
 import net.minecraft.world.item.CreativeModeTab;
 import net.minecraft.world.item.ItemStack;
 import net.minecraft.world.level.block.Block;
@@ -13,6 +19,10 @@ import net.minecraftforge.api.distmarker.OnlyIn;
 import net.minecraftforge.common.MinecraftForge;
 import net.minecraftforge.event.RegisterCommandsEvent;
 import net.minecraftforge.event.RegistryEvent;
+import net.minecraftforge.event.TagsUpdatedEvent;
+import net.minecraftforge.event.TickEvent;
+import net.minecraftforge.event.server.ServerStoppingEvent;
+import net.minecraftforge.event.world.ChunkEvent;
 import net.minecraftforge.event.world.WorldEvent;
 import net.minecraftforge.eventbus.api.SubscribeEvent;
 import net.minecraftforge.fml.common.Mod;
@@ -30,6 +40,11 @@ public class StructureLibForge extends StructureLib {
         };
         FMLJavaModLoadingContext.get().getModEventBus().addGenericListener(Block.class, this::onRegisterBlock);
         MinecraftForge.EVENT_BUS.addListener(this::onCommandRegistration);
+        MinecraftForge.EVENT_BUS.addListener(this::onChunkUnload);
+        MinecraftForge.EVENT_BUS.addListener(this::onWorldUnload);
+        MinecraftForge.EVENT_BUS.addListener(this::onServerTick);
+        MinecraftForge.EVENT_BUS.addListener(this::onServerStopping);
+        MinecraftForge.EVENT_BUS.addListener(this::onTagsUpdated);
         preInit();
         if (FMLEnvironment.dist.isClient()){
             MinecraftForge.EVENT_BUS.addListener(this::onWorldLoad);
@@ -44,6 +59,35 @@ public class StructureLibForge extends StructureLib {
         CommandConfigureChannels.registerCommands(event.getDispatcher(), event.getEnvironment());
     }
 
+    private void onChunkUnload(ChunkEvent.Unload event){
+        StructureWatcher.onChunkUnload(event.getWorld(), event.getChunk().getPos());
+        StructureIndex.onChunkUnload(event.getWorld(), event.getChunk().getPos());
+        StructureCheckCache.onChunkUnload(event.getWorld(), event.getChunk().getPos());
+    }
+
+    private void onWorldUnload(WorldEvent.Unload event){
+        StructureWatcher.onLevelUnload(event.getWorld());
+        StructureIndex.onLevelUnload(event.getWorld());
+        StructureCheckScheduler.onLevelUnload(event.getWorld());
+        StructureCheckCache.onLevelUnload(event.getWorld());
+        AutoPlaceJobs.onLevelUnload(event.getWorld());
+    }
+
+    private void onServerTick(TickEvent.ServerTickEvent event){
+        if (event.phase == TickEvent.Phase.END) {
+            StructureCheckScheduler.onServerTick();
+            AutoPlaceJobs.onServerTick();
+        }
+    }
+
+    private void onServerStopping(ServerStoppingEvent event){
+        StructureCheckScheduler.onServerStopping();
+    }
+
+    private void onTagsUpdated(TagsUpdatedEvent event){
+        BlockStateSet.onTagsUpdated();
+    }
+
     @OnlyIn(Dist.CLIENT)
     private void onWorldLoad(WorldEvent.Load event){
         ClientProxy.onLevelLoad(event.getWorld());
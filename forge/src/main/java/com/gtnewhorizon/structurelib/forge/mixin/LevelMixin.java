@@ -0,0 +1,26 @@
+package com.gtnewhorizon.structurelib.forge.mixin;
+
+import com.gtnewhorizon.structurelib.structure.BlockPlacementBatch;
+import com.gtnewhorizon.structurelib.structure.StructureCheckCache;
+import com.gtnewhorizon.structurelib.structure.StructureWatcher;
+import net.minecraft.core.BlockPos;
+import net.minecraft.world.level.Level;
+import net.minecraft.world.level.block.state.BlockState;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfoReturnable;
+
+@Mixin(Level.class)
+public abstract class LevelMixin {
+
+    // NeighborNotifyEvent is only fired for changes that notify neighbors, this sees all of them
+    @Inject(method = "setBlock(Lnet/minecraft/core/BlockPos;Lnet/minecraft/world/level/block/state/BlockState;II)Z", at = @At("RETURN"))
+    private void structurelib$onSetBlock(BlockPos pos, BlockState state, int flags, int recursionLeft, CallbackInfoReturnable<Boolean> cir) {
+        if (cir.getReturnValueZ()) {
+            StructureWatcher.onBlockChanged((Level) (Object) this, pos);
+            StructureCheckCache.onBlockChanged((Level) (Object) this, pos);
+            BlockPlacementBatch.onBlockChanged((Level) (Object) this, pos, flags);
+        }
+    }
+}